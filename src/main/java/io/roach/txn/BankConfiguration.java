@@ -1,35 +1,80 @@
 package io.roach.txn;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.converter.FormHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
-import org.springframework.transaction.TransactionDefinition;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import io.roach.txn.aspect.AdvisorOrder;
+import io.roach.txn.aspect.HistoricalReadCacheAspect;
 import io.roach.txn.aspect.RetryableTransactionalAspect;
 import io.roach.txn.aspect.SavepointTransactionalAspect;
 import io.roach.txn.aspect.TransactionHintsAspect;
+import io.roach.txn.aspect.TransactionMetricsAspect;
+import io.roach.txn.jdbc.DataSourceBeanPostProcessor;
 
 @Configuration
 @EnableTransactionManagement(order = AdvisorOrder.LEVEL_2)
 public class BankConfiguration implements WebMvcConfigurer {
-    @Profile("!savepoints")
     @Bean
     public RetryableTransactionalAspect retryableTransactionalAspect() {
         return new RetryableTransactionalAspect();
     }
 
-    // Savepoints only works with JDBC
+    // Retries within the transaction by rollback to savepoint, before falling back to full restarts
     @Profile("savepoints")
     @Bean
-    public SavepointTransactionalAspect savepointTransactionAspect() {
-        return new SavepointTransactionalAspect("cockroach_restart", TransactionDefinition.ISOLATION_SERIALIZABLE);
+    public SavepointTransactionalAspect savepointTransactionAspect(
+            @Value("${roach.txn.savepoint.max-attempts:10}") int maxAttempts) {
+        return new SavepointTransactionalAspect("cockroach_restart", maxAttempts);
+    }
+
+    // Shared timer for non-blocking (async) transaction retries, only hands attempts to the retry executor
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService retryScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "txn-retry-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Bounded worker pool running the scheduled attempts of async transaction retries
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService retryExecutor(@Value("${roach.txn.async.pool-size:8}") int poolSize,
+                                         @Value("${roach.txn.async.queue-capacity:1024}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "txn-retry-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory);
+    }
+
+    @Bean
+    public TransactionMetricsAspect transactionMetricsAspect() {
+        return new TransactionMetricsAspect();
     }
 
     // Transaction hints are CRDB specific
@@ -39,6 +84,30 @@ public class BankConfiguration implements WebMvcConfigurer {
         return new TransactionHintsAspect();
     }
 
+    // Follower reads and time travel reads are CRDB specific
+    @Bean
+    @Profile("crdb")
+    public HistoricalReadCacheAspect historicalReadCacheAspect() {
+        return new HistoricalReadCacheAspect();
+    }
+
+    // Plain JDBC transactions for the JDBC repository, without opening a JPA session per transaction
+    @Bean
+    @Profile("jdbc")
+    public PlatformTransactionManager transactionManager(DataSource dataSource) {
+        return new DataSourceTransactionManager(dataSource);
+    }
+
+    // Tracks session variables per pooled connection to skip redundant SETs and reset on return,
+    // and optionally records connection acquisition and usage time per transaction boundary
+    @Bean
+    public static DataSourceBeanPostProcessor dataSourceBeanPostProcessor(
+            @Value("${roach.txn.session.tracking-enabled:true}") boolean sessionTracking,
+            @Value("${roach.txn.session.retained-variables:application_name}") Set<String> retainedVariables,
+            @Value("${roach.txn.pool.connection-metrics-enabled:false}") boolean connectionMetrics) {
+        return new DataSourceBeanPostProcessor(sessionTracking ? retainedVariables : null, connectionMetrics);
+    }
+
     @Override
     public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
         converters.add(new FormHttpMessageConverter());
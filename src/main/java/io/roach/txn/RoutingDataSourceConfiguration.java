@@ -0,0 +1,55 @@
+package io.roach.txn;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.roach.txn.aspect.DataSourceRoutingAspect;
+import io.roach.txn.jdbc.TransactionRoutingDataSource;
+
+/**
+ * Separate connection pools for read-write and read-only transactions, each with its own
+ * URL and sizing. The write pool is configured by {@code spring.datasource.*} and the read
+ * pool by {@code roach.txn.routing.read.*}.
+ */
+@Configuration
+@Profile("routing")
+public class RoutingDataSourceConfiguration {
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writeDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("write");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("roach.txn.routing.read")
+    public HikariDataSource readDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("read");
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writeDataSource") DataSource writeDataSource,
+                                 @Qualifier("readDataSource") DataSource readDataSource) {
+        return new TransactionRoutingDataSource(writeDataSource, readDataSource);
+    }
+
+    @Bean
+    public DataSourceRoutingAspect dataSourceRoutingAspect() {
+        return new DataSourceRoutingAspect();
+    }
+}
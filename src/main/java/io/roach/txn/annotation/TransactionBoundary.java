@@ -26,7 +26,62 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional(propagation = Propagation.REQUIRES_NEW) // Setting isolation here overrides HikariCP isolation level
 public @interface TransactionBoundary {
     /**
-     * @return number of times to retry aborted transactions with exponential back off (up to 5s per cycle)
+     * @return number of times to retry aborted transactions with backoff
      */
     int retryAttempts() default 30;
+
+    /**
+     * @return backoff strategy between retry attempts ({@link Backoff#DEFAULT} uses the global default)
+     */
+    Backoff backoff() default Backoff.DEFAULT;
+
+    /**
+     * @return initial (or fixed) backoff delay in milliseconds, negative to use the global default
+     */
+    long backoffInitialMillis() default -1;
+
+    /**
+     * @return backoff multiplier per attempt, zero or negative to use the global default
+     */
+    double backoffMultiplier() default -1;
+
+    /**
+     * @return backoff delay cap in milliseconds, negative to use the global default
+     */
+    long backoffMaxMillis() default -1;
+
+    /**
+     * Enables non-blocking retries for methods returning {@link java.util.concurrent.CompletionStage} or
+     * {@link org.springframework.web.context.request.async.DeferredResult}. Every attempt runs the method
+     * body within the transaction on the async worker pool, and retries are scheduled on a shared timer
+     * after the backoff delay, so the calling thread returns right away.
+     * <p>
+     * Methods returning {@link java.util.concurrent.Callable} are rejected: the body of the Callable would
+     * run after the transaction has committed, and whoever runs it would block on the retry result.
+     *
+     * @return true to enable async retries
+     */
+    boolean async() default false;
+
+    /**
+     * SpEL expression evaluated against the method arguments (for example {@code #request.name}).
+     * Calls resolving to the same key are queued in-process before a transaction is started,
+     * rather than conflicting in the database.
+     *
+     * @return contention key expression, empty for no admission control
+     */
+    String contentionKey() default "";
+
+    /**
+     * @return max number of concurrent transactions per contention key
+     */
+    int contentionPermits() default 1;
+
+    enum Backoff {
+        DEFAULT,
+        EXPONENTIAL,
+        FULL_JITTER,
+        DECORRELATED_JITTER,
+        FIXED
+    }
 }
@@ -39,8 +39,25 @@ public @interface TransactionHints {
      */
     String timeTravelReadInterval() default "(empty)";
 
+    /**
+     * @return transaction priority of the first attempt
+     */
     Priority priority() default Priority.NORMAL;
 
+    /**
+     * Raises the priority one level every given number of attempts, so that transactions repeatedly
+     * losing conflicts eventually win. For example LOW with 2 runs attempts 1-2 as LOW, 3-4 as NORMAL
+     * and the rest as HIGH.
+     *
+     * @return attempts per priority level before escalating, zero to keep the priority across retries
+     */
+    int priorityEscalationAttempts() default 0;
+
+    /**
+     * @return highest priority reached by escalation
+     */
+    Priority maxPriority() default Priority.HIGH;
+
     enum Priority {
         LOW,
         NORMAL,
@@ -6,9 +6,20 @@ import org.springframework.core.Ordered;
  * Ordering constants for transaction advisors.
  */
 public interface AdvisorOrder {
-    int LEVEL_1 = Ordered.LOWEST_PRECEDENCE - 4;
+    // Before retry advice, cache hits never start a transaction
+    int CACHING = Ordered.LOWEST_PRECEDENCE - 7;
 
-    int LEVEL_2 = Ordered.LOWEST_PRECEDENCE - 3;
+    int LEVEL_1 = Ordered.LOWEST_PRECEDENCE - 6;
+
+    // After retry advice but before TX advice, ahead of connection acquisition
+    int ROUTING = LEVEL_1 + 1;
+
+    int LEVEL_2 = Ordered.LOWEST_PRECEDENCE - 4;
+
+    // First advice inside the transaction, once per transaction
+    int METRICS = LEVEL_2 + 1;
 
     int LEVEL_3 = Ordered.LOWEST_PRECEDENCE - 2;
+
+    int LEVEL_4 = Ordered.LOWEST_PRECEDENCE - 1;
 }
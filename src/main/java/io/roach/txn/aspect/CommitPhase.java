@@ -0,0 +1,46 @@
+package io.roach.txn.aspect;
+
+/**
+ * Tracks whether the transaction of the attempt in progress has started to commit, so that
+ * the {@link RetryableTransactionalAspect} can tell a connection lost before the commit, which
+ * is safe to retry, from one lost during the commit, which leaves the outcome unknown.
+ * <p>
+ * The retry advice binds a phase to the thread for each attempt. It is marked as committing
+ * by the {@link TransactionMetricsAspect} before commit, and by the
+ * {@link SavepointTransactionalAspect} around {@code RELEASE SAVEPOINT}, which commits in
+ * the CockroachDB restart protocol.
+ */
+final class CommitPhase {
+    private static final ThreadLocal<CommitPhase> currentPhase = new ThreadLocal<>();
+
+    // Read by async completion callbacks, possibly on another thread
+    private volatile boolean committing;
+
+    /**
+     * @param phase the phase to bind to the current thread, or null to unbind
+     * @return the previously bound phase, if any
+     */
+    static CommitPhase setCurrent(CommitPhase phase) {
+        CommitPhase previous = currentPhase.get();
+        if (phase != null) {
+            currentPhase.set(phase);
+        } else {
+            currentPhase.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * Marks the phase bound to the current thread, if any.
+     */
+    static void setCommitting(boolean committing) {
+        CommitPhase phase = currentPhase.get();
+        if (phase != null) {
+            phase.committing = committing;
+        }
+    }
+
+    boolean isCommitting() {
+        return committing;
+    }
+}
@@ -0,0 +1,36 @@
+package io.roach.txn.aspect;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.annotation.Order;
+
+import io.roach.txn.annotation.TransactionHints;
+import io.roach.txn.jdbc.TransactionRoutingDataSource;
+import io.roach.txn.jdbc.TransactionRoutingDataSource.Route;
+
+/**
+ * Binds the {@link Route} of hinted methods for the {@link TransactionRoutingDataSource}.
+ * Read-only, follower read and time travel read transactions are routed to the read pool.
+ */
+@Aspect
+// This advisor must be after the retry advisor (each attempt may run on a different thread)
+// and before the TX advisor (which acquires the connection)
+@Order(AdvisorOrder.ROUTING)
+public class DataSourceRoutingAspect {
+    @Around("io.roach.txn.aspect.Pointcuts.anyTransactionHintedOperation()")
+    public Object doInRoute(ProceedingJoinPoint pjp) throws Throwable {
+        TransactionHints transactionHints = JoinPointAnnotations.transactionHints(pjp);
+        Route route = transactionHints.readOnly()
+                || transactionHints.followerRead()
+                || !"(empty)".equals(transactionHints.timeTravelReadInterval())
+                ? Route.READ : Route.WRITE;
+
+        Route previous = TransactionRoutingDataSource.setCurrentRoute(route);
+        try {
+            return pjp.proceed();
+        } finally {
+            TransactionRoutingDataSource.setCurrentRoute(previous);
+        }
+    }
+}
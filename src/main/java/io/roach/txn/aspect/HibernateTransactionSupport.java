@@ -0,0 +1,43 @@
+package io.roach.txn.aspect;
+
+import java.lang.reflect.Field;
+
+import org.hibernate.Session;
+import org.hibernate.engine.transaction.internal.TransactionImpl;
+import org.hibernate.resource.transaction.spi.TransactionCoordinator;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Hibernate marks the resource-local transaction rollback-only whenever a JDBC error passes
+ * through the session, as mandated by JPA. After a rollback to savepoint the transaction is
+ * healthy again, but Hibernate offers no API to clear the mark, so it is reset on the
+ * transaction driver directly.
+ */
+abstract class HibernateTransactionSupport {
+    private HibernateTransactionSupport() {
+    }
+
+    /**
+     * @return true if the transaction is no longer marked rollback-only, false if the mark
+     * can't be reset with this transaction driver and the transaction must be rolled back
+     */
+    static boolean resetRollbackOnly(Session session) {
+        org.hibernate.Transaction transaction = session.getTransaction();
+        if (!transaction.getRollbackOnly()) {
+            return true;
+        }
+        if (!(transaction instanceof TransactionImpl)) {
+            return false;
+        }
+
+        TransactionCoordinator.TransactionDriver driver =
+                ((TransactionImpl) transaction).internalGetTransactionDriverControl();
+        Field field = ReflectionUtils.findField(driver.getClass(), "rollbackOnly", boolean.class);
+        if (field == null) {
+            return false;
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, driver, false);
+        return !transaction.getRollbackOnly();
+    }
+}
@@ -0,0 +1,211 @@
+package io.roach.txn.aspect;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.hateoas.RepresentationModel;
+import org.springframework.http.HttpEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import io.roach.txn.annotation.TransactionHints;
+import io.roach.txn.cache.HistoricalReadCache;
+
+/**
+ * Serves repeated follower reads and time travel reads from the {@link HistoricalReadCache}.
+ * The historical read timestamp is derived from the local clock, offset by the time travel
+ * interval or by the follower read lag, so that cache hits don't touch the database at all.
+ * The interval is parsed once per method, methods with an interval that can't be parsed
+ * locally are not cached.
+ * <p>
+ * Only plain data is cached, methods returning web models (with links built for the
+ * current request) or asynchronous results are not.
+ */
+@Aspect
+// This advisor must be before the retry advisor, so that hits don't start a transaction
+@Order(AdvisorOrder.CACHING)
+public class HistoricalReadCacheAspect {
+    private static final long NOT_CACHEABLE = Long.MIN_VALUE;
+
+    private static final Pattern INTERVAL_PART = Pattern.compile("\\G\\s*(\\d+(?:\\.\\d+)?)\\s*([a-z]+)");
+
+    private static final Pattern INTERVAL_CLOCK = Pattern.compile("(\\d+):(\\d{2}):(\\d{2}(?:\\.\\d+)?)");
+
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<Method, Long> readTimestampOffsets = new ConcurrentHashMap<>();
+
+    @Autowired
+    private HistoricalReadCache historicalReadCache;
+
+    @Value("${roach.txn.result-cache.follower-read-lag-millis:4800}")
+    private long followerReadLagMillis;
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Around("io.roach.txn.aspect.Pointcuts.anyTransactionHintedOperation()")
+    public Object doCached(ProceedingJoinPoint pjp) throws Throwable {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        Long offsetMillis = readTimestampOffsets.get(method);
+        if (offsetMillis == null) {
+            offsetMillis = readTimestampOffsets.computeIfAbsent(method,
+                    m -> resolveReadTimestampOffset(m, JoinPointAnnotations.transactionHints(pjp)));
+        }
+        if (offsetMillis == NOT_CACHEABLE || !historicalReadCache.isEnabled()) {
+            return pjp.proceed();
+        }
+
+        long nowMillis = clock.getAsLong();
+        HistoricalReadCache.Key key = historicalReadCache.keyOf(method, pjp.getArgs(),
+                nowMillis + offsetMillis, nowMillis);
+        Object rv = historicalReadCache.get(key);
+        if (rv == null) {
+            rv = pjp.proceed();
+            if (rv instanceof HttpEntity || rv instanceof RepresentationModel) {
+                logger.warn("Not caching results of '{}': not plain data", method.getName());
+                readTimestampOffsets.put(method, NOT_CACHEABLE);
+            } else {
+                historicalReadCache.put(key, rv, HistoricalReadCache.estimateBytes(rv));
+            }
+        }
+        return rv;
+    }
+
+    private long resolveReadTimestampOffset(Method method, TransactionHints transactionHints) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class
+                || CompletionStage.class.isAssignableFrom(returnType)
+                || DeferredResult.class.isAssignableFrom(returnType)
+                || Callable.class.isAssignableFrom(returnType)
+                || HttpEntity.class.isAssignableFrom(returnType)
+                || RepresentationModel.class.isAssignableFrom(returnType)) {
+            return NOT_CACHEABLE;
+        }
+        if (transactionHints.followerRead()) {
+            return -followerReadLagMillis;
+        }
+        if ("(empty)".equals(transactionHints.timeTravelReadInterval())) {
+            return NOT_CACHEABLE;
+        }
+        Long intervalMillis = parseIntervalMillis(transactionHints.timeTravelReadInterval());
+        if (intervalMillis == null) {
+            logger.warn("Not caching results of '{}': unsupported interval '{}'", method.getName(),
+                    transactionHints.timeTravelReadInterval());
+            return NOT_CACHEABLE;
+        }
+        if (intervalMillis >= 0) {
+            logger.warn("Not caching results of '{}': read timestamp not in the past", method.getName());
+            return NOT_CACHEABLE;
+        }
+        return intervalMillis;
+    }
+
+    /**
+     * Parses the common interval forms, such as '-10s', '-1m30s', '-5 minutes', '-1 month' or
+     * '-00:00:10', with an optional leading sign applying to the whole interval. Months count
+     * as 30 days and years as 365.25 days, as in the epoch of an interval.
+     *
+     * @return the interval in millis or null if not supported
+     */
+    static Long parseIntervalMillis(String interval) {
+        String s = interval.trim().toLowerCase(Locale.ROOT);
+        int sign = 1;
+        if (s.startsWith("-") || s.startsWith("+")) {
+            sign = s.startsWith("-") ? -1 : 1;
+            s = s.substring(1).trim();
+        }
+
+        Matcher clockMatcher = INTERVAL_CLOCK.matcher(s);
+        if (clockMatcher.matches()) {
+            double millis = Long.parseLong(clockMatcher.group(1)) * 3_600_000.0
+                    + Long.parseLong(clockMatcher.group(2)) * 60_000.0
+                    + Double.parseDouble(clockMatcher.group(3)) * 1000.0;
+            return sign * Math.round(millis);
+        }
+
+        Matcher partMatcher = INTERVAL_PART.matcher(s);
+        double millis = 0;
+        int end = 0;
+        while (partMatcher.find()) {
+            double unitMillis = unitMillis(partMatcher.group(2));
+            if (unitMillis == 0) {
+                return null;
+            }
+            millis += Double.parseDouble(partMatcher.group(1)) * unitMillis;
+            end = partMatcher.end();
+        }
+        if (end == 0 || end != s.length()) {
+            return null;
+        }
+        return sign * Math.round(millis);
+    }
+
+    private static double unitMillis(String unit) {
+        switch (unit) {
+            case "us":
+            case "microsecond":
+            case "microseconds":
+                return 0.001;
+            case "ms":
+            case "millisecond":
+            case "milliseconds":
+                return 1;
+            case "s":
+            case "sec":
+            case "secs":
+            case "second":
+            case "seconds":
+                return 1000;
+            case "m":
+            case "min":
+            case "mins":
+            case "minute":
+            case "minutes":
+                return 60_000;
+            case "h":
+            case "hr":
+            case "hrs":
+            case "hour":
+            case "hours":
+                return 3_600_000;
+            case "d":
+            case "day":
+            case "days":
+                return 86_400_000;
+            case "w":
+            case "week":
+            case "weeks":
+                return 7 * 86_400_000.0;
+            case "mon":
+            case "mons":
+            case "month":
+            case "months":
+                return 30 * 86_400_000.0;
+            case "y":
+            case "year":
+            case "years":
+                return 365.25 * 86_400_000.0;
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.roach.txn.aspect;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.Assert;
+
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.annotation.TransactionHints;
+
+/**
+ * Resolves the annotations matched by the {@link Pointcuts} once per target class and
+ * method, so that advice does not look them up reflectively on every call.
+ */
+final class JoinPointAnnotations {
+    private static final Map<Class<?>, Map<Method, TransactionBoundary>> transactionBoundaries
+            = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, Map<Method, TransactionHints>> transactionHints
+            = new ConcurrentHashMap<>();
+
+    private static final Map<Class<?>, Map<Method, PrioritySchedule>> prioritySchedules
+            = new ConcurrentHashMap<>();
+
+    private JoinPointAnnotations() {
+    }
+
+    static TransactionBoundary transactionBoundary(ProceedingJoinPoint pjp) {
+        return resolve(transactionBoundaries, pjp, TransactionBoundary.class);
+    }
+
+    static TransactionHints transactionHints(ProceedingJoinPoint pjp) {
+        return resolve(transactionHints, pjp, TransactionHints.class);
+    }
+
+    /**
+     * @return the priority schedule of a transaction boundary, NORMAL for all attempts unless
+     * also annotated with {@link TransactionHints}
+     */
+    static PrioritySchedule prioritySchedule(ProceedingJoinPoint pjp) {
+        Class<?> targetClass = pjp.getTarget() != null ? pjp.getTarget().getClass() : Object.class;
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+
+        Map<Method, PrioritySchedule> schedules = prioritySchedules.get(targetClass);
+        PrioritySchedule schedule = schedules != null ? schedules.get(method) : null;
+        if (schedule == null) {
+            TransactionHints hints = AnnotationUtils.findAnnotation(
+                    AopUtils.getMostSpecificMethod(method, targetClass), TransactionHints.class);
+            schedule = hints != null ? PrioritySchedule.of(hints) : PrioritySchedule.DEFAULT;
+            prioritySchedules.computeIfAbsent(targetClass, c -> new ConcurrentHashMap<>()).put(method, schedule);
+        }
+        return schedule;
+    }
+
+    private static <A extends Annotation> A resolve(Map<Class<?>, Map<Method, A>> cache,
+                                                    ProceedingJoinPoint pjp, Class<A> annotationType) {
+        // Keyed by target class as well, interface methods may be annotated differently per implementation
+        Class<?> targetClass = pjp.getTarget() != null ? pjp.getTarget().getClass() : Object.class;
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+
+        Map<Method, A> annotations = cache.get(targetClass);
+        A annotation = annotations != null ? annotations.get(method) : null;
+        if (annotation == null) {
+            annotation = AnnotationUtils.findAnnotation(
+                    AopUtils.getMostSpecificMethod(method, targetClass), annotationType);
+            Assert.state(annotation != null, "No @" + annotationType.getSimpleName() + " on " + method);
+            cache.computeIfAbsent(targetClass, c -> new ConcurrentHashMap<>()).put(method, annotation);
+        }
+        return annotation;
+    }
+}
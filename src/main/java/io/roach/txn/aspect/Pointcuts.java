@@ -3,21 +3,20 @@ package io.roach.txn.aspect;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 
-import io.roach.txn.annotation.TransactionBoundary;
-import io.roach.txn.annotation.TransactionHints;
-
 /**
  * Shared AOP pointcut expression used across services and components.
+ * <p>
+ * Annotations are matched in the execution signature rather than with {@code @annotation(..)},
+ * which Spring AOP treats as a dynamic pointcut and re-evaluates with parameter binding on
+ * every call. Advice resolves the annotations through {@link JoinPointAnnotations} instead.
  */
 @Aspect
 public class Pointcuts {
-    @Pointcut("execution(* io.roach..*(..)) "
-            + "&& @annotation(transactionBoundary)")
-    public void anyTransactionBoundaryOperation(TransactionBoundary transactionBoundary) {
+    @Pointcut("execution(@io.roach.txn.annotation.TransactionBoundary * io.roach..*(..))")
+    public void anyTransactionBoundaryOperation() {
     }
 
-    @Pointcut("execution(* io.roach..*(..)) "
-            + "&& @annotation(transactionHints)")
-    public void anyTransactionHintedOperation(TransactionHints transactionHints) {
+    @Pointcut("execution(@io.roach.txn.annotation.TransactionHints * io.roach..*(..))")
+    public void anyTransactionHintedOperation() {
     }
 }
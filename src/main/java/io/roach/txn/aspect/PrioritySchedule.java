@@ -0,0 +1,45 @@
+package io.roach.txn.aspect;
+
+import io.roach.txn.annotation.TransactionHints;
+
+/**
+ * Transaction priority per attempt of a transaction boundary call, escalated as declared by
+ * {@link TransactionHints#priorityEscalationAttempts()}.
+ */
+public final class PrioritySchedule {
+    private static final TransactionHints.Priority[] PRIORITIES = TransactionHints.Priority.values();
+
+    public static final PrioritySchedule DEFAULT = new PrioritySchedule(TransactionHints.Priority.NORMAL, 0,
+            TransactionHints.Priority.NORMAL);
+
+    private final TransactionHints.Priority initialPriority;
+
+    private final int escalationAttempts;
+
+    private final TransactionHints.Priority maxPriority;
+
+    public static PrioritySchedule of(TransactionHints transactionHints) {
+        return new PrioritySchedule(transactionHints.priority(), transactionHints.priorityEscalationAttempts(),
+                transactionHints.maxPriority());
+    }
+
+    private PrioritySchedule(TransactionHints.Priority initialPriority, int escalationAttempts,
+                             TransactionHints.Priority maxPriority) {
+        this.initialPriority = initialPriority;
+        this.escalationAttempts = escalationAttempts;
+        // Escalation never lowers the initial priority
+        this.maxPriority = maxPriority.compareTo(initialPriority) < 0 ? initialPriority : maxPriority;
+    }
+
+    /**
+     * @param attempt attempt number starting at 1
+     * @return the priority of the given attempt
+     */
+    public TransactionHints.Priority priorityOf(int attempt) {
+        if (escalationAttempts <= 0 || attempt <= escalationAttempts) {
+            return initialPriority;
+        }
+        int level = initialPriority.ordinal() + (attempt - 1) / escalationAttempts;
+        return PRIORITIES[Math.min(level, maxPriority.ordinal())];
+    }
+}
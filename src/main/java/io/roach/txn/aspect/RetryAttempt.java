@@ -0,0 +1,34 @@
+package io.roach.txn.aspect;
+
+/**
+ * Binds the attempt number of the transaction boundary call in progress to the current
+ * thread, for advice further down the call chain such as the {@link TransactionHintsAspect}.
+ */
+final class RetryAttempt {
+    private static final ThreadLocal<Integer> currentAttempt = new ThreadLocal<>();
+
+    private RetryAttempt() {
+    }
+
+    /**
+     * @param attempt the attempt number to bind to the current thread, or null to unbind
+     * @return the previously bound attempt number, if any
+     */
+    static Integer setCurrent(Integer attempt) {
+        Integer previous = currentAttempt.get();
+        if (attempt != null) {
+            currentAttempt.set(attempt);
+        } else {
+            currentAttempt.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * @return the attempt number in progress on this thread, 1 outside of retry advice
+     */
+    static int current() {
+        Integer attempt = currentAttempt.get();
+        return attempt != null ? attempt : 1;
+    }
+}
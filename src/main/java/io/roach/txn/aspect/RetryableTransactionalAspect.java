@@ -1,28 +1,70 @@
 package io.roach.txn.aspect;
 
-import java.lang.reflect.UndeclaredThrowableException;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.dao.ConcurrencyFailureException;
-import org.springframework.dao.TransientDataAccessException;
-import org.springframework.orm.jpa.JpaSystemException;
-import org.springframework.transaction.TransactionSystemException;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.bulkhead.TransactionBulkhead;
+import io.roach.txn.contention.ContentionLimiter;
+import io.roach.txn.locking.LockingReadPolicy;
+import io.roach.txn.locking.ReadMode;
+import io.roach.txn.metrics.BoundaryMetrics;
+import io.roach.txn.metrics.TransactionMetrics;
+import io.roach.txn.retry.BackoffPolicy;
+import io.roach.txn.retry.BackoffPolicyResolver;
+import io.roach.txn.retry.RetryBudget;
+import io.roach.txn.retry.RetryBudgetExhaustedException;
+import io.roach.txn.retry.TransientErrorClassifier;
 
 /**
  * AOP around advice that intercepts and retries transient concurrency exceptions such
- * as deadlock looser, pessmistic and optimistic locking failures. Methods matching
+ * as deadlock looser, pessmistic and optimistic locking failures, as decided by the
+ * {@link TransientErrorClassifier}. Methods matching
  * the pointcut expression (annotated with @TransactionBoundary) are retried a number
- * of times with exponential backoff.
+ * of times with a configurable backoff policy.
+ * <p>
+ * Boundaries marked {@code async} must return a {@link CompletionStage} or {@link DeferredResult}.
+ * Every attempt runs on a bounded worker pool, the first one dispatched right away and each retry
+ * scheduled on a shared timer, so that no request thread or connection is held during admission
+ * or backoff. Async
+ * attempts are admitted without blocking: when the contention key or bulkhead is full, admission
+ * is polled again after a short delay rather than parking a thread, until the respective timeout.
+ * <p>
+ * Boundaries with a contention key are admitted through the {@link ContentionLimiter}
+ * before each attempt, that is before the transaction is started. Every attempt is then
+ * admitted through the {@link TransactionBulkhead}, so that no more transactions are
+ * started than there are pooled connections.
+ * <p>
+ * The attempt number is bound to the thread for the duration of each attempt, which lets
+ * {@link TransactionHintsAspect} escalate the transaction priority of retries. Bulkhead
+ * admission follows the same {@link PrioritySchedule}.
+ * <p>
+ * The outcome of every attempt is fed to the {@link LockingReadPolicy}, and the read mode it
+ * chose for the method is bound to the thread for the repositories.
+ * <p>
+ * Connection errors are retried unless the attempt had started to commit, as tracked by the
+ * {@link CommitPhase}. The transaction may then have committed, and retrying it could apply it twice.
  * <p>
  * NOTE: This advice needs to runs in a non-transactional context, that is before the
  * underlying transaction advisor.
@@ -32,52 +74,374 @@ import io.roach.txn.annotation.TransactionBoundary;
 public class RetryableTransactionalAspect {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
-    @Around(value = "io.roach.txn.aspect.Pointcuts.anyTransactionBoundaryOperation(transactionBoundary)",
-            argNames = "pjp,transactionBoundary")
-    public Object retryableOperation(ProceedingJoinPoint pjp, TransactionBoundary transactionBoundary)
-            throws Throwable {
+    @Autowired
+    private BackoffPolicyResolver backoffPolicyResolver;
+
+    @Autowired
+    private TransientErrorClassifier transientErrorClassifier;
+
+    @Autowired
+    private RetryBudget retryBudget;
+
+    @Autowired
+    @Qualifier("retryScheduler")
+    private ScheduledExecutorService retryScheduler;
+
+    @Autowired
+    @Qualifier("retryExecutor")
+    private ExecutorService retryExecutor;
+
+    @Value("${roach.txn.async.admission-poll-millis:5}")
+    private long admissionPollMillis;
+
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
+    @Autowired
+    private ContentionLimiter contentionLimiter;
+
+    @Autowired
+    private TransactionBulkhead transactionBulkhead;
+
+    @Autowired
+    private LockingReadPolicy lockingReadPolicy;
+
+    @Around("io.roach.txn.aspect.Pointcuts.anyTransactionBoundaryOperation()")
+    public Object retryableOperation(ProceedingJoinPoint pjp) throws Throwable {
+        TransactionBoundary transactionBoundary = JoinPointAnnotations.transactionBoundary(pjp);
+        if (transactionBoundary.async()) {
+            return asyncRetryableOperation(pjp, transactionBoundary);
+        }
+
         int numAttempts = 0;
-        AtomicLong backoffMillis = new AtomicLong(150);
+        long backoffMillis = 0;
+        long backoffNanos = 0;
+        BackoffPolicy backoffPolicy = backoffPolicyResolver.resolve(transactionBoundary);
+        BoundaryMetrics metrics = transactionMetrics.of(pjp);
+        Semaphore contentionLock = contentionLimiter.resolve(pjp, transactionBoundary);
+        PrioritySchedule prioritySchedule = JoinPointAnnotations.prioritySchedule(pjp);
+        LockingReadPolicy.MethodState readPolicy = lockingReadPolicy.of(pjp);
 
         Assert.isTrue(!TransactionSynchronizationManager.isActualTransactionActive(), "TX active");
 
+        retryBudget.recordAttempt();
+
+        final long callStart = System.nanoTime();
+
         do {
+            long attemptStart = System.nanoTime();
+            CommitPhase commitPhase = new CommitPhase();
             try {
                 numAttempts++;
-                return pjp.proceed();
-            } catch (TransientDataAccessException | TransactionSystemException | JpaSystemException ex) {
-                handleTransientException(ex, numAttempts, transactionBoundary.retryAttempts(), pjp, backoffMillis);
-            } catch (UndeclaredThrowableException ex) {
-                Throwable t = ex.getUndeclaredThrowable();
-                if (t instanceof TransientDataAccessException) {
-                    handleTransientException(t, numAttempts,
-                            transactionBoundary.retryAttempts(), pjp, backoffMillis);
-                } else {
+                Object rv = proceed(pjp, contentionLock, prioritySchedule, readPolicy.getMode(), numAttempts,
+                        metrics, commitPhase);
+                metrics.recordProceed(System.nanoTime() - attemptStart);
+                readPolicy.recordAttempt(false);
+                metrics.recordCall(System.nanoTime() - callStart, numAttempts, backoffNanos,
+                        TransactionMetrics.Outcome.SUCCESS, null);
+                return rv;
+            } catch (Exception ex) {
+                metrics.recordProceed(System.nanoTime() - attemptStart);
+                boolean isTransient = isRetryable(ex, commitPhase);
+                readPolicy.recordAttempt(isTransient);
+                if (!isTransient) {
+                    metrics.recordCall(System.nanoTime() - callStart, numAttempts, backoffNanos,
+                            TransactionMetrics.Outcome.NON_TRANSIENT_FAILURE, ex);
                     throw ex;
                 }
+                if (numAttempts >= transactionBoundary.retryAttempts()) {
+                    break; // No retry left to take from the budget or back off for
+                }
+                long backoffStart = System.nanoTime();
+                try {
+                    backoffMillis = handleTransientException(ex, numAttempts, transactionBoundary.retryAttempts(),
+                            pjp, backoffPolicy, backoffMillis);
+                } catch (RetryBudgetExhaustedException e) {
+                    metrics.recordCall(System.nanoTime() - callStart, numAttempts, backoffNanos,
+                            TransactionMetrics.Outcome.EXHAUSTED, e);
+                    throw e;
+                }
+                backoffNanos += System.nanoTime() - backoffStart;
             }
         } while (numAttempts < transactionBoundary.retryAttempts());
 
-        throw new ConcurrencyFailureException("Too many transient errors (" + numAttempts + ") for method ["
-                + pjp.getSignature().toLongString() + "]. Giving up!");
+        ConcurrencyFailureException ex = new ConcurrencyFailureException("Too many transient errors ("
+                + numAttempts + ") for method [" + pjp.getSignature().toLongString() + "]. Giving up!");
+        metrics.recordCall(System.nanoTime() - callStart, numAttempts, backoffNanos,
+                TransactionMetrics.Outcome.EXHAUSTED, ex);
+        throw ex;
+    }
+
+    private Object proceed(ProceedingJoinPoint pjp, Semaphore contentionLock, PrioritySchedule prioritySchedule,
+                           ReadMode readMode, int numAttempts, BoundaryMetrics metrics,
+                           CommitPhase commitPhase) throws Throwable {
+        // Admission is per attempt so that no permit is held during backoff. The contention key
+        // is awaited first, so that no bulkhead slot is held while queued behind the same key.
+        contentionLimiter.acquire(contentionLock, pjp);
+        try {
+            long waitStart = System.nanoTime();
+            transactionBulkhead.acquire(prioritySchedule.priorityOf(numAttempts), pjp.getSignature());
+            metrics.recordConnectionWait(System.nanoTime() - waitStart);
+        } catch (RuntimeException e) {
+            contentionLimiter.release(contentionLock);
+            throw e;
+        }
+        return proceedAdmitted(pjp, contentionLock, readMode, numAttempts, metrics, commitPhase);
     }
 
-    private void handleTransientException(Throwable ex, int numAttempts, int totalAttempts,
-                                          ProceedingJoinPoint pjp, AtomicLong backoffMillis) {
+    // Runs an admitted attempt and releases its admission
+    private Object proceedAdmitted(ProceedingJoinPoint pjp, Semaphore contentionLock, ReadMode readMode,
+                                   int numAttempts, BoundaryMetrics metrics,
+                                   CommitPhase commitPhase) throws Throwable {
+        try {
+            BoundaryMetrics previousMetrics = TransactionMetrics.setCurrentBoundary(metrics);
+            Integer previousAttempt = RetryAttempt.setCurrent(numAttempts);
+            ReadMode previousReadMode = LockingReadPolicy.setCurrentMode(readMode);
+            CommitPhase previousPhase = CommitPhase.setCurrent(commitPhase);
+            try {
+                return pjp.proceed();
+            } finally {
+                CommitPhase.setCurrent(previousPhase);
+                LockingReadPolicy.setCurrentMode(previousReadMode);
+                RetryAttempt.setCurrent(previousAttempt);
+                TransactionMetrics.setCurrentBoundary(previousMetrics);
+                transactionBulkhead.release();
+            }
+        } finally {
+            contentionLimiter.release(contentionLock);
+        }
+    }
+
+    // A connection lost while committing leaves the outcome unknown, the transaction may have committed
+    private boolean isRetryable(Throwable ex, CommitPhase commitPhase) {
+        return transientErrorClassifier.isTransient(ex)
+                && !(commitPhase.isCommitting() && transientErrorClassifier.isConnectionError(ex));
+    }
+
+    private void acquireRetry(Throwable ex, ProceedingJoinPoint pjp) {
+        if (!retryBudget.tryAcquireRetry()) {
+            throw new RetryBudgetExhaustedException("Retry budget exhausted for method ["
+                    + pjp.getSignature().toLongString() + "]", retryBudget.getRetryAfterSeconds(), ex);
+        }
+    }
+
+    private long handleTransientException(Throwable ex, int numAttempts, int totalAttempts,
+                                          ProceedingJoinPoint pjp, BackoffPolicy backoffPolicy,
+                                          long previousBackoffMillis) {
+        acquireRetry(ex, pjp);
+        long backoffMillis = backoffPolicy.nextBackoffMillis(numAttempts, previousBackoffMillis);
+        logTransientException(ex, numAttempts, totalAttempts, pjp, backoffMillis);
+        if (backoffMillis >= 0) {
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                e.printStackTrace();
+            }
+        }
+        return backoffMillis;
+    }
+
+    private void logTransientException(Throwable ex, int numAttempts, int totalAttempts,
+                                       ProceedingJoinPoint pjp, long backoffMillis) {
         if (logger.isWarnEnabled()) {
             logger.warn("Transient data access exception (" + numAttempts + " of max " + totalAttempts + ") "
                     + "detected (retry in " + backoffMillis + " ms) "
-                    +"in method '" + pjp.getSignature().getDeclaringTypeName() + "." + pjp.getSignature().getName()
+                    + "in method '" + pjp.getSignature().getDeclaringTypeName() + "." + pjp.getSignature().getName()
                     + "': " + ex.getMessage());
         }
-        if (backoffMillis.get() >= 0) {
+    }
+
+    private Object asyncRetryableOperation(ProceedingJoinPoint pjp, TransactionBoundary transactionBoundary) {
+        Class<?> returnType = ((MethodSignature) pjp.getSignature()).getReturnType();
+        // A Callable would run after the transaction has committed, and its caller would block on the result
+        Assert.state(CompletionStage.class.isAssignableFrom(returnType)
+                        || DeferredResult.class.isAssignableFrom(returnType),
+                "Async transaction boundary must return CompletionStage or DeferredResult: "
+                        + pjp.getSignature().toLongString());
+        Assert.isTrue(!TransactionSynchronizationManager.isActualTransactionActive(), "TX active");
+
+        retryBudget.recordAttempt();
+
+        AsyncRetry retry = new AsyncRetry(pjp, transactionBoundary,
+                backoffPolicyResolver.resolve(transactionBoundary), transactionMetrics.of(pjp),
+                contentionLimiter.resolve(pjp, transactionBoundary), JoinPointAnnotations.prioritySchedule(pjp),
+                lockingReadPolicy.of(pjp));
+        CompletableFuture<Object> promise = retry.promise;
+        // All attempts run on the worker pool, so the calling thread never waits for admission
+        long admissionStart = System.nanoTime();
+        submitAsync(retry, 1, () -> attemptAsync(retry, 1, 0, admissionStart));
+
+        if (DeferredResult.class.isAssignableFrom(returnType)) {
+            DeferredResult<Object> deferredResult = new DeferredResult<>();
+            promise.whenComplete((result, ex) -> {
+                if (ex != null) {
+                    deferredResult.setErrorResult(ex);
+                } else {
+                    deferredResult.setResult(result);
+                }
+            });
+            return deferredResult;
+        }
+        return promise;
+    }
+
+    private void attemptAsync(AsyncRetry retry, int numAttempts, long previousBackoffMillis, long admissionStart) {
+        ProceedingJoinPoint pjp = retry.pjp;
+        int totalAttempts = retry.transactionBoundary.retryAttempts();
+
+        final long attemptStart = System.nanoTime();
+        CommitPhase commitPhase = new CommitPhase();
+        CompletableFuture<Object> attempt;
+        try {
+            if (!tryAdmit(retry, numAttempts, attemptStart - admissionStart)) {
+                retryScheduler.schedule(() -> submitAsync(retry, numAttempts,
+                                () -> attemptAsync(retry, numAttempts, previousBackoffMillis, admissionStart)),
+                        admissionPollMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            retry.metrics.recordConnectionWait(System.nanoTime() - admissionStart);
+            attempt = unwrapAsyncResult(proceedAdmitted(pjp, retry.contentionLock,
+                    retry.readPolicy.getMode(), numAttempts, retry.metrics, commitPhase));
+        } catch (Throwable ex) {
+            attempt = new CompletableFuture<>();
+            attempt.completeExceptionally(ex);
+        }
+
+        attempt.whenComplete((result, ex) -> {
+            retry.metrics.recordProceed(System.nanoTime() - attemptStart);
+
+            if (ex == null) {
+                retry.readPolicy.recordAttempt(false);
+                retry.complete(numAttempts, TransactionMetrics.Outcome.SUCCESS, result, null);
+                return;
+            }
+
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            boolean isTransient = isRetryable(cause, commitPhase);
+            retry.readPolicy.recordAttempt(isTransient);
+            if (!isTransient) {
+                retry.complete(numAttempts, TransactionMetrics.Outcome.NON_TRANSIENT_FAILURE, null, cause);
+                return;
+            }
+
+            if (numAttempts >= totalAttempts) {
+                retry.complete(numAttempts, TransactionMetrics.Outcome.EXHAUSTED, null,
+                        new ConcurrencyFailureException("Too many transient errors (" + numAttempts
+                                + ") for method [" + pjp.getSignature().toLongString() + "]. Giving up!"));
+                return;
+            }
+
             try {
-                Thread.sleep(backoffMillis.get());
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                e.printStackTrace();
+                acquireRetry(cause, pjp);
+            } catch (RetryBudgetExhaustedException e) {
+                retry.complete(numAttempts, TransactionMetrics.Outcome.EXHAUSTED, null, e);
+                return;
+            }
+
+            long backoffMillis = retry.backoffPolicy.nextBackoffMillis(numAttempts, previousBackoffMillis);
+            logTransientException(cause, numAttempts, totalAttempts, pjp, backoffMillis);
+
+            long delayMillis = Math.max(0, backoffMillis);
+            retry.backoffNanos += TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            retryScheduler.schedule(() -> submitAsync(retry, numAttempts + 1,
+                            () -> attemptAsync(retry, numAttempts + 1, backoffMillis, System.nanoTime())),
+                    delayMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    // Non-blocking admission, the contention key first as in proceed()
+    private boolean tryAdmit(AsyncRetry retry, int numAttempts, long waitedNanos) {
+        if (!contentionLimiter.tryAcquire(retry.contentionLock, waitedNanos, retry.pjp)) {
+            return false;
+        }
+        try {
+            if (transactionBulkhead.tryAcquire(waitedNanos, retry.pjp.getSignature())) {
+                return true;
+            }
+        } catch (RuntimeException e) {
+            contentionLimiter.release(retry.contentionLock);
+            throw e;
+        }
+        contentionLimiter.release(retry.contentionLock);
+        return false;
+    }
+
+    // Hands an attempt from the timer to the worker pool, failing the call if the pool is saturated
+    private void submitAsync(AsyncRetry retry, int numAttempts, Runnable attempt) {
+        try {
+            retryExecutor.execute(attempt);
+        } catch (RejectedExecutionException e) {
+            retry.complete(numAttempts - 1, TransactionMetrics.Outcome.NON_TRANSIENT_FAILURE, null, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Object> unwrapAsyncResult(Object rv) {
+        if (rv instanceof CompletionStage) {
+            return ((CompletionStage<Object>) rv).toCompletableFuture();
+        }
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (rv instanceof DeferredResult) {
+            DeferredResult<Object> deferredResult = (DeferredResult<Object>) rv;
+            deferredResult.setResultHandler(result -> {
+                if (result instanceof Throwable) {
+                    future.completeExceptionally((Throwable) result);
+                } else {
+                    future.complete(result);
+                }
+            });
+        } else {
+            future.complete(rv);
+        }
+        return future;
+    }
+
+    /**
+     * State of one async boundary call, carried across scheduled retry attempts.
+     */
+    private static final class AsyncRetry {
+        final ProceedingJoinPoint pjp;
+
+        final TransactionBoundary transactionBoundary;
+
+        final BackoffPolicy backoffPolicy;
+
+        final BoundaryMetrics metrics;
+
+        final Semaphore contentionLock;
+
+        final PrioritySchedule prioritySchedule;
+
+        final LockingReadPolicy.MethodState readPolicy;
+
+        final CompletableFuture<Object> promise = new CompletableFuture<>();
+
+        final long callStart = System.nanoTime();
+
+        // Only touched by one attempt at a time, in scheduling order
+        long backoffNanos;
+
+        AsyncRetry(ProceedingJoinPoint pjp, TransactionBoundary transactionBoundary,
+                   BackoffPolicy backoffPolicy, BoundaryMetrics metrics, Semaphore contentionLock,
+                   PrioritySchedule prioritySchedule, LockingReadPolicy.MethodState readPolicy) {
+            this.pjp = pjp;
+            this.transactionBoundary = transactionBoundary;
+            this.backoffPolicy = backoffPolicy;
+            this.metrics = metrics;
+            this.contentionLock = contentionLock;
+            this.prioritySchedule = prioritySchedule;
+            this.readPolicy = readPolicy;
+        }
+
+        void complete(int numAttempts, TransactionMetrics.Outcome outcome, Object result, Throwable ex) {
+            metrics.recordCall(System.nanoTime() - callStart, numAttempts, backoffNanos, outcome, ex);
+            if (ex != null) {
+                promise.completeExceptionally(ex);
+            } else {
+                promise.complete(result);
             }
-            backoffMillis.set(Math.min((long) (backoffMillis.get() * 1.5), 1000));
         }
     }
 }
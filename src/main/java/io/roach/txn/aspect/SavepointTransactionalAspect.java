@@ -1,183 +1,227 @@
 package io.roach.txn.aspect;
 
-import java.lang.reflect.UndeclaredThrowableException;
 import java.sql.SQLException;
 import java.sql.Savepoint;
-import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.annotation.Order;
-import org.springframework.dao.TransientDataAccessException;
-import org.springframework.jdbc.datasource.JdbcTransactionObjectSupport;
-import org.springframework.transaction.PlatformTransactionManager;
-import org.springframework.transaction.TransactionDefinition;
-import org.springframework.transaction.TransactionException;
-import org.springframework.transaction.TransactionStatus;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerHolder;
 import org.springframework.transaction.TransactionSystemException;
-import org.springframework.transaction.support.DefaultTransactionDefinition;
-import org.springframework.transaction.support.DefaultTransactionStatus;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
 
 import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.metrics.TransactionMetrics;
+import io.roach.txn.retry.BackoffPolicy;
+import io.roach.txn.retry.BackoffPolicyResolver;
+import io.roach.txn.retry.RetryBudget;
+import io.roach.txn.retry.RetryBudgetExhaustedException;
+import io.roach.txn.retry.TransientErrorClassifier;
 
 /**
- * AOP advice for making TX boundary methods rollback to savepoint
- * on transient errors (aborts due to contention).
+ * AOP advice implementing CockroachDB's client-side transaction retry protocol for
+ * TX boundary methods:
+ * <pre>
+ * BEGIN;
+ * SAVEPOINT cockroach_restart;
+ * -- business logic, on retry error: ROLLBACK TO SAVEPOINT cockroach_restart and repeat
+ * RELEASE SAVEPOINT cockroach_restart; -- on retry error: ROLLBACK TO SAVEPOINT and repeat
+ * COMMIT;
+ * </pre>
+ * Retries reuse the same transaction and connection, which retains the transaction's
+ * priority and avoids a new BEGIN per attempt.
+ * <p>
+ * With JPA, the savepoint statements run on the connection of the Hibernate session through
+ * {@link Session#doReturningWork}. The session is flushed before the savepoint and before its
+ * release, so that pending writes are inside the protocol, and cleared after a rollback to the
+ * savepoint, since its entity state may then be ahead of the database. The rollback-only marks
+ * Hibernate and participating interceptors set on the way out are reset, or else the transient
+ * error propagates to a full restart by the {@link RetryableTransactionalAspect}.
  * <p>
- * It requires that this advice runs in a non-TX context before the
- * TX advisor.
+ * NOTE: This advice must run in a transactional context, right after the TX advisor, since
+ * the savepoint must be the first statement of the transaction. Transaction hints are
+ * applied after the savepoint, and again after each rollback to it.
  * <p>
- * NOTE: Savepoints are not supported by JPA/Hibernate.
+ * Savepoint retries only happen in the first transaction of a boundary call, and at most
+ * as many times as the boundary's retry attempts. Once exhausted, the transient error
+ * propagates and the {@link RetryableTransactionalAspect} restarts the entire transaction,
+ * which bounds the total number of attempts to the savepoint attempts plus the retry attempts.
  */
 @Aspect
-// Set highest so this advice runs before the TX advice on each joinpoint
-@Order(AdvisorOrder.LEVEL_1)
+// This advisor must be after the TX advisor and before the hints advisor in the call chain
+@Order(AdvisorOrder.LEVEL_3)
 public class SavepointTransactionalAspect {
     protected final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private String savepointName;
+    private final String savepointName;
 
-    private int isolationLevel;
+    private final int maxAttempts;
 
     @Autowired
-    private PlatformTransactionManager transactionManager;
+    private DataSource dataSource;
 
-    public SavepointTransactionalAspect(String savepointName, int isolationLevel) {
+    @Autowired
+    private ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    @Autowired
+    private BackoffPolicyResolver backoffPolicyResolver;
+
+    @Autowired
+    private TransientErrorClassifier transientErrorClassifier;
+
+    @Autowired
+    private RetryBudget retryBudget;
+
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
+    public SavepointTransactionalAspect(String savepointName, int maxAttempts) {
         this.savepointName = savepointName;
-        this.isolationLevel = isolationLevel;
+        this.maxAttempts = maxAttempts;
     }
 
-    @Around(value = "io.roach.txn.aspect.Pointcuts.anyTransactionBoundaryOperation(transactionBoundary)", argNames = "pjp,transactionBoundary")
-    public Object doInTransaction(ProceedingJoinPoint pjp, TransactionBoundary transactionBoundary) {
-        Object rv;
+    @Around("io.roach.txn.aspect.Pointcuts.anyTransactionBoundaryOperation()")
+    public Object doInTransaction(ProceedingJoinPoint pjp) throws Throwable {
+        TransactionBoundary transactionBoundary = JoinPointAnnotations.transactionBoundary(pjp);
+        Assert.isTrue(TransactionSynchronizationManager.isActualTransactionActive(), "TX not active");
 
-        if (TransactionSynchronizationManager.isActualTransactionActive()) {
-            throw new IllegalStateException("TX already active -- possible Spring profile conflict");
+        int attempts = Math.min(maxAttempts, transactionBoundary.retryAttempts());
+        if (attempts <= 1 || RetryAttempt.current() > 1) {
+            return pjp.proceed();
         }
 
-        AtomicLong backoffMillis = new AtomicLong(150);
-
-        for (int outerAttempts = 1; ; outerAttempts++) {
-            if (outerAttempts >= transactionBoundary.retryAttempts()) {
-                throw new TransactionSystemException("Too many transaction retry:s ("
-                        + transactionBoundary.retryAttempts() + ") for method ["
-                        + pjp.getSignature().toLongString() + "] - giving up!");
-            }
+        Session session = transactionalSession();
+        BackoffPolicy backoffPolicy = backoffPolicyResolver.resolve(transactionBoundary);
 
-            final DefaultTransactionDefinition transactionDefinition = new DefaultTransactionDefinition();
-//            transactionDefinition.setReadOnly(transactionBoundary.readOnly());
-//            transactionDefinition.setTimeout(transactionBoundary.timeout());
-            transactionDefinition.setIsolationLevel(isolationLevel);
-            transactionDefinition.setName(Thread.currentThread().getName());
-            transactionDefinition.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        if (session != null) {
+            session.flush(); // Not to be discarded when the session is cleared after rollback
+        }
+        Savepoint savepoint = doWithConnection(session, "Could not create savepoint",
+                connection -> savepointName != null
+                        ? connection.setSavepoint(savepointName)
+                        : connection.setSavepoint());
 
-            final TransactionStatus status = transactionManager.getTransaction(transactionDefinition);
+        long backoffMillis = 0;
 
+        for (int numAttempts = 1; ; numAttempts++) {
             try {
-                Object savepoint = createSavepoint(status);
-                for (int innerAttempts = 1; ; innerAttempts++) {
-                    if (innerAttempts + outerAttempts >= transactionBoundary.retryAttempts()) {
-                        throw new TransactionSystemException("Too many savepoint retry:s ("
-                                + transactionBoundary.retryAttempts() + ") for method ["
-                                + pjp.getSignature().toLongString() + "] - giving up!");
-                    }
-
-                    try {
-                        rv = pjp.proceed(); // May throw transient errors, catch in inner loop and rollback to SP
-                        break;
-                    } catch (TransientDataAccessException ex) {
-                        handleTransientException(ex, innerAttempts + outerAttempts, transactionBoundary.retryAttempts(),
-                                pjp, backoffMillis);
-                        status.rollbackToSavepoint(savepoint);
-                    } catch (UndeclaredThrowableException ex) {
-                        Throwable t = ex.getUndeclaredThrowable();
-                        if (t instanceof TransientDataAccessException) {
-                            handleTransientException(t, outerAttempts,
-                                    transactionBoundary.retryAttempts(), pjp, backoffMillis);
-                        } else {
-                            rollbackOnException(status, ex);
-                            throw ex;
-                        }
-                    }
+                Object rv = pjp.proceed(); // May throw transient errors
+                if (session != null) {
+                    session.flush(); // Pending writes must hit the database before release
+                }
+                // RELEASE commits in CockroachDB, so a connection lost here leaves the outcome unknown
+                CommitPhase.setCommitting(true);
+                doWithConnection(session, "Could not release savepoint", connection -> {
+                    connection.releaseSavepoint(savepoint); // May throw transient errors
+                    return null;
+                });
+                return rv;
+            } catch (RuntimeException ex) {
+                // A lost connection can't be rolled back to the savepoint, the retry advice decides
+                // whether a full restart is safe
+                if (!transientErrorClassifier.isTransient(ex) || transientErrorClassifier.isConnectionError(ex)
+                        || numAttempts >= attempts) {
+                    throw ex; // Rollback in TX advice, possibly followed by a full restart
                 }
-                status.releaseSavepoint(
-                        savepoint); // May throw transient errors, catch in outer loop and rollback entire TX
-            } catch (TransientDataAccessException ex) {
-                handleTransientException(ex, outerAttempts, transactionBoundary.retryAttempts(), pjp, backoffMillis);
-                this.transactionManager.rollback(status);
-                continue;
-            } catch (RuntimeException | Error ex) {
-                rollbackOnException(status, ex);
-                throw ex;
-            } catch (Throwable ex) {
-                rollbackOnException(status, ex);
-                throw new UndeclaredThrowableException(ex,
-                        "TransactionCallback threw undeclared checked exception");
-            }
 
-            try {
-                transactionManager.commit(status);
-                break;
-            } catch (TransientDataAccessException | TransactionSystemException ex) {
-                handleTransientException(ex, outerAttempts, transactionBoundary.retryAttempts(), pjp, backoffMillis);
+                CommitPhase.setCommitting(false);
+                if (!rollbackToSavepoint(session, savepoint)) {
+                    throw ex;
+                }
+                transactionMetrics.of(pjp).recordSavepointRollback();
+
+                backoffMillis = handleTransientException(ex, numAttempts, attempts, pjp, backoffPolicy,
+                        backoffMillis);
             }
         }
+    }
 
-        return rv;
+    private Session transactionalSession() {
+        // Bound by the JPA transaction manager, not with plain JDBC transactions
+        EntityManagerFactory emf = entityManagerFactory.getIfAvailable();
+        if (emf == null) {
+            return null;
+        }
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(emf);
+        return entityManager != null ? entityManager.unwrap(Session.class) : null;
     }
 
-    private Savepoint createSavepoint(TransactionStatus status) {
-        DefaultTransactionStatus defStatus = (DefaultTransactionStatus) status;
-        JdbcTransactionObjectSupport sm = (JdbcTransactionObjectSupport) defStatus.getTransaction();
+    private <T> T doWithConnection(Session session, String failureMessage, ReturningWork<T> work) {
         try {
-            if (savepointName != null) {
-                return sm.getConnectionHolder().getConnection().setSavepoint(savepointName);
-            }
-            return sm.getConnectionHolder().getConnection().setSavepoint();
-        } catch (SQLException e) {
-            throw new TransactionSystemException("Could not create savePoint", e);
+            return session != null
+                    ? session.doReturningWork(work)
+                    : work.execute(DataSourceUtils.getConnection(dataSource));
+        } catch (SQLException | HibernateException e) {
+            throw new TransactionSystemException(failureMessage, e);
+        }
+    }
 
+    /**
+     * @return true if the transaction can proceed after the rollback, false if it remains rollback-only
+     */
+    private boolean rollbackToSavepoint(Session session, Savepoint savepoint) {
+        doWithConnection(session, "Could not roll back to savepoint", connection -> {
+            connection.rollback(savepoint);
+            return null;
+        });
+
+        // Undo rollback-only marks set when the transient error passed through
+        // participating transaction interceptors
+        ConnectionHolder connectionHolder =
+                (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+        if (connectionHolder != null) {
+            connectionHolder.resetRollbackOnly();
         }
+        if (session == null) {
+            return true;
+        }
+
+        session.clear(); // Entity state may be ahead of the database
+        EntityManagerHolder entityManagerHolder = (EntityManagerHolder)
+                TransactionSynchronizationManager.getResource(entityManagerFactory.getObject());
+        if (entityManagerHolder != null) {
+            entityManagerHolder.resetRollbackOnly();
+        }
+        return HibernateTransactionSupport.resetRollbackOnly(session);
     }
 
-    private void handleTransientException(Throwable ex, int numAttempts, int totalAttempts,
-                                          ProceedingJoinPoint pjp, AtomicLong backoffMillis) {
+    private long handleTransientException(Throwable ex, int numAttempts, int totalAttempts, ProceedingJoinPoint pjp,
+                                          BackoffPolicy backoffPolicy, long previousBackoffMillis) {
+        if (!retryBudget.tryAcquireRetry()) {
+            throw new RetryBudgetExhaustedException("Retry budget exhausted for method ["
+                    + pjp.getSignature().toLongString() + "]", retryBudget.getRetryAfterSeconds(), ex);
+        }
+        long backoffMillis = backoffPolicy.nextBackoffMillis(numAttempts, previousBackoffMillis);
         if (logger.isWarnEnabled()) {
             logger.warn("Transient data access exception (" + numAttempts + " of max " + totalAttempts + ") "
-                    + "detected (retry in " + backoffMillis + " ms) "
+                    + "detected (rollback to savepoint and retry in " + backoffMillis + " ms) "
                     + "in method '" + pjp.getSignature().getDeclaringTypeName() + "." + pjp.getSignature().getName()
                     + "': " + ex.getMessage());
         }
-        if (backoffMillis.get() >= 0) {
+        if (backoffMillis >= 0) {
             try {
-                Thread.sleep(backoffMillis.get());
+                Thread.sleep(backoffMillis);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 e.printStackTrace();
             }
-            backoffMillis.set(Math.min((long) (backoffMillis.get() * 1.5), 5000));
-        }
-    }
-
-    private void rollbackOnException(TransactionStatus status, Throwable ex) throws TransactionException {
-        logger.debug("Initiating transaction rollback on application exception", ex);
-        try {
-            this.transactionManager.rollback(status);
-        } catch (TransactionSystemException ex2) {
-            logger.error("Application exception overridden by rollback exception", ex);
-            ex2.initApplicationException(ex);
-            throw ex2;
-        } catch (RuntimeException ex2) {
-            logger.error("Application exception overridden by rollback exception", ex);
-            throw ex2;
-        } catch (Error err) {
-            logger.error("Application exception overridden by rollback error", ex);
-            throw err;
         }
+        return backoffMillis;
     }
 }
@@ -1,65 +1,121 @@
 package io.roach.txn.aspect;
 
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
 
-import io.roach.txn.annotation.TransactionHint;
 import io.roach.txn.annotation.TransactionHints;
+import io.roach.txn.jdbc.SessionState;
 
 /**
  * https://www.cockroachlabs.com/docs/v19.2/set-vars.html
+ * <p>
+ * The hints of each annotated method are compiled into an immutable {@link TransactionHintsPlan}
+ * at startup and applied in a single round trip per transaction. Session variables already
+ * in effect on the connection are skipped when the data source tracks {@link SessionState}.
+ * <p>
+ * The transaction priority follows the attempt number bound by the retry advice, so that
+ * retries can be escalated as declared by {@link TransactionHints#priorityEscalationAttempts()}.
+ * Retries by rollback to savepoint stay within the same transaction and keep its priority,
+ * the hints are applied again since a rollback to savepoint reverts them.
  */
 @Aspect
-// This advisor must be after retry and TX advisors in the call chain (in a transactional context)
-@Order(AdvisorOrder.LEVEL_3)
-public class TransactionHintsAspect {
+// This advisor must be after retry, TX and savepoint advisors in the call chain (in a transactional context)
+@Order(AdvisorOrder.LEVEL_4)
+public class TransactionHintsAspect implements SmartInitializingSingleton {
+    protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<Method, TransactionHintsPlan> plans = new ConcurrentHashMap<>();
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private ApplicationContext applicationContext;
+
     @Value("${info.build.artifact}")
     private String applicationName;
 
-    @Around(value = "io.roach.txn.aspect.Pointcuts.anyTransactionHintedOperation(transactionHints)",
-            argNames = "pjp,transactionHints")
-    public Object doInTransaction(ProceedingJoinPoint pjp, TransactionHints transactionHints)
-            throws Throwable {
-        Assert.isTrue(TransactionSynchronizationManager.isActualTransactionActive(), "TX not active");
-
-        jdbcTemplate.execute("SET application_name = '" + applicationName + "'");
-        jdbcTemplate.execute("SET TRANSACTION PRIORITY " + transactionHints.priority().name());
-
-        if (transactionHints.followerRead()) {
-            jdbcTemplate.execute("SET TRANSACTION AS OF SYSTEM TIME experimental_follower_read_timestamp()");
-        } else {
-            if (!"(empty)".equals(transactionHints.timeTravelReadInterval())) {
-                jdbcTemplate.update("SET TRANSACTION AS OF SYSTEM TIME INTERVAL '" + transactionHints
-                        .timeTravelReadInterval() + "'");
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String beanName : applicationContext.getBeanDefinitionNames()) {
+            Class<?> beanType = applicationContext.getType(beanName);
+            if (beanType == null || !beanType.getName().startsWith("io.roach")) {
+                continue;
             }
+            ReflectionUtils.doWithMethods(ClassUtils.getUserClass(beanType), method -> {
+                TransactionHints transactionHints = AnnotationUtils.findAnnotation(method, TransactionHints.class);
+                if (transactionHints != null) {
+                    TransactionHintsPlan plan = plans.computeIfAbsent(method,
+                            m -> TransactionHintsPlan.compile(transactionHints, applicationName));
+                    logger.debug("Compiled transaction hints for {}: {}", method, plan);
+                }
+            });
         }
+    }
 
-        if (transactionHints.timeout() > 0) {
-            jdbcTemplate.update("SET statement_timeout=?", transactionHints.timeout() * 1000);
-        }
+    @Around("io.roach.txn.aspect.Pointcuts.anyTransactionHintedOperation()")
+    public Object doInTransaction(ProceedingJoinPoint pjp) throws Throwable {
+        Assert.isTrue(TransactionSynchronizationManager.isActualTransactionActive(), "TX not active");
 
-        if (transactionHints.readOnly()) {
-            jdbcTemplate.execute("SET transaction_read_only=true");
+        TransactionHintsPlan plan = plans.get(((MethodSignature) pjp.getSignature()).getMethod());
+        if (plan == null) {
+            // Fallback for methods not discovered at startup
+            plan = plans.computeIfAbsent(((MethodSignature) pjp.getSignature()).getMethod(),
+                    m -> TransactionHintsPlan.compile(JoinPointAnnotations.transactionHints(pjp), applicationName));
         }
+        TransactionHintsPlan hintsPlan = plan;
+        int attempt = RetryAttempt.current();
 
-        for (TransactionHint hint : transactionHints.hints()) {
-            if (hint.intValue() >= 0) {
-                jdbcTemplate.update("SET " + hint.name() + "=" + hint.intValue());
-            } else {
-                jdbcTemplate.update("SET " + hint.name() + "=?", hint.value());
+        jdbcTemplate.execute((ConnectionCallback<Object>) connection -> {
+            if (!connection.isWrapperFor(SessionState.class)) {
+                return execute(connection, hintsPlan.getSql(attempt));
             }
-        }
+            // Skip session variables already in effect on this connection
+            SessionState sessionState = connection.unwrap(SessionState.class);
+            try {
+                String sql = sessionState.pendingStatements(hintsPlan.getSessionVariables())
+                        + hintsPlan.getTransactionSql(attempt);
+                if (!sql.isEmpty()) {
+                    execute(connection, sql);
+                }
+                sessionState.applied(hintsPlan.getSessionVariables());
+            } catch (SQLException e) {
+                sessionState.invalidate();
+                throw e;
+            }
+            return null;
+        });
 
         return pjp.proceed();
     }
+
+    private static Object execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+        return null;
+    }
 }
@@ -0,0 +1,153 @@
+package io.roach.txn.aspect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.roach.txn.annotation.TransactionHint;
+import io.roach.txn.annotation.TransactionHints;
+
+/**
+ * Immutable, precompiled form of a {@link TransactionHints} annotation. Session variables
+ * and transaction modes are rendered to SQL once, so that applying the hints at the start
+ * of a transaction is a single multi-statement round trip with no string building.
+ * <p>
+ * All transaction modes are combined into one {@code SET TRANSACTION} statement, rendered
+ * for each priority the {@link PrioritySchedule} may escalate retries to. The session default
+ * {@code NORMAL} priority is left out, so no statement is needed when it's the only mode.
+ */
+public final class TransactionHintsPlan {
+    private static final String EMPTY_INTERVAL = "(empty)";
+
+    private static final String DEFAULT_PRIORITY_VARIABLE = "default_transaction_priority";
+
+    private final Map<String, String> sessionVariables;
+
+    private final List<String> transactionModes;
+
+    private final boolean readOnly;
+
+    private final boolean historicalRead;
+
+    private final PrioritySchedule prioritySchedule;
+
+    // By priority ordinal
+    private final String[] transactionSql;
+
+    private final String[] sql;
+
+    public static TransactionHintsPlan compile(TransactionHints transactionHints, String applicationName) {
+        Map<String, String> sessionVariables = new LinkedHashMap<>();
+        sessionVariables.put("application_name", quote(applicationName));
+        if (transactionHints.timeout() > 0) {
+            sessionVariables.put("statement_timeout", String.valueOf(transactionHints.timeout() * 1000));
+        }
+        for (TransactionHint hint : transactionHints.hints()) {
+            sessionVariables.put(hint.name(), hint.intValue() >= 0
+                    ? String.valueOf(hint.intValue())
+                    : quote(hint.value()));
+        }
+
+        List<String> transactionModes = new ArrayList<>();
+        if (transactionHints.readOnly()) {
+            transactionModes.add("READ ONLY");
+        }
+        boolean historicalRead = true;
+        if (transactionHints.followerRead()) {
+            transactionModes.add("AS OF SYSTEM TIME experimental_follower_read_timestamp()");
+        } else if (!EMPTY_INTERVAL.equals(transactionHints.timeTravelReadInterval())) {
+            transactionModes.add("AS OF SYSTEM TIME INTERVAL "
+                    + quote(transactionHints.timeTravelReadInterval()));
+        } else {
+            historicalRead = false;
+        }
+
+        return new TransactionHintsPlan(sessionVariables, transactionModes, PrioritySchedule.of(transactionHints),
+                transactionHints.readOnly(), historicalRead);
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    private TransactionHintsPlan(Map<String, String> sessionVariables, List<String> transactionModes,
+                                 PrioritySchedule prioritySchedule, boolean readOnly, boolean historicalRead) {
+        this.sessionVariables = Collections.unmodifiableMap(sessionVariables);
+        this.transactionModes = Collections.unmodifiableList(transactionModes);
+        this.prioritySchedule = prioritySchedule;
+        this.readOnly = readOnly;
+        this.historicalRead = historicalRead;
+
+        StringBuilder sb = new StringBuilder();
+        sessionVariables.forEach((name, value) -> sb.append("SET ").append(name).append(" = ").append(value)
+                .append("; "));
+        String sessionSql = sb.toString();
+
+        TransactionHints.Priority[] priorities = TransactionHints.Priority.values();
+        this.transactionSql = new String[priorities.length];
+        this.sql = new String[priorities.length];
+        for (TransactionHints.Priority priority : priorities) {
+            List<String> modes = new ArrayList<>();
+            // Unless a hint changes the session default
+            if (priority != TransactionHints.Priority.NORMAL
+                    || sessionVariables.containsKey(DEFAULT_PRIORITY_VARIABLE)) {
+                modes.add("PRIORITY " + priority.name());
+            }
+            modes.addAll(transactionModes);
+            transactionSql[priority.ordinal()] = modes.isEmpty() ? "" : "SET TRANSACTION " + String.join(", ", modes);
+            sql[priority.ordinal()] = sessionSql + transactionSql[priority.ordinal()];
+        }
+    }
+
+    /**
+     * @return session variables by name, with values as SQL literals
+     */
+    public Map<String, String> getSessionVariables() {
+        return sessionVariables;
+    }
+
+    /**
+     * @return transaction modes other than the priority
+     */
+    public List<String> getTransactionModes() {
+        return transactionModes;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return true for follower reads or time travel reads (AS OF SYSTEM TIME)
+     */
+    public boolean isHistoricalRead() {
+        return historicalRead;
+    }
+
+    public PrioritySchedule getPrioritySchedule() {
+        return prioritySchedule;
+    }
+
+    /**
+     * @param attempt attempt number starting at 1
+     * @return the transaction modes as a single SET TRANSACTION statement, or empty if none
+     */
+    public String getTransactionSql(int attempt) {
+        return transactionSql[prioritySchedule.priorityOf(attempt).ordinal()];
+    }
+
+    /**
+     * @param attempt attempt number starting at 1
+     * @return all hints as a single multi-statement batch
+     */
+    public String getSql(int attempt) {
+        return sql[prioritySchedule.priorityOf(attempt).ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return getSql(1);
+    }
+}
@@ -0,0 +1,59 @@
+package io.roach.txn.aspect;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.roach.txn.metrics.BoundaryMetrics;
+import io.roach.txn.metrics.TransactionMetrics;
+
+/**
+ * AOP advice recording commit latency for transaction boundaries. It registers a
+ * transaction synchronization that measures the time from before commit (including
+ * any ORM flush) until completion. The same point marks the {@link CommitPhase} of the
+ * attempt, so that connection errors from here on are not retried.
+ * <p>
+ * NOTE: This advice must run in a transactional context, that is after the TX advisor.
+ */
+@Aspect
+@Order(AdvisorOrder.METRICS)
+public class TransactionMetricsAspect {
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
+    @Around("io.roach.txn.aspect.Pointcuts.anyTransactionBoundaryOperation()")
+    public Object doInTransaction(ProceedingJoinPoint pjp) throws Throwable {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new CommitTimingSynchronization(transactionMetrics.of(pjp)));
+        }
+        return pjp.proceed();
+    }
+
+    private static class CommitTimingSynchronization extends TransactionSynchronizationAdapter {
+        private final BoundaryMetrics metrics;
+
+        private long commitStart;
+
+        CommitTimingSynchronization(BoundaryMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            commitStart = System.nanoTime();
+            CommitPhase.setCommitting(true);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (commitStart != 0) {
+                metrics.recordCommit(System.nanoTime() - commitStart, status == STATUS_COMMITTED);
+            }
+        }
+    }
+}
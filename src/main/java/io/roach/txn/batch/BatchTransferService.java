@@ -0,0 +1,91 @@
+package io.roach.txn.batch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.controller.TransferRequest;
+import io.roach.txn.domain.Money;
+import io.roach.txn.repository.AccountRepository;
+
+/**
+ * Applies a chunk of transfers in a single transaction, with one grouped balance query
+ * and a single JDBC batch of updates.
+ */
+@Service
+public class BatchTransferService {
+    private static final Comparator<TransferRequest> UPDATE_ORDER = Comparator
+            .comparing(TransferRequest::getName)
+            .thenComparing(TransferRequest::getAccountType);
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Transfers are applied in order against the balances read up front, rejecting the
+     * ones that would overdraw the account. The updates are executed sorted by name and
+     * type, so that concurrent batches lock rows in the same order.
+     *
+     * @return per transfer flag, true if accepted
+     * @throws EmptyResultDataAccessException if an account of the given type doesn't exist,
+     * failing the whole batch since the funds check relied on its amount
+     */
+    @TransactionBoundary
+    public boolean[] applyTransfers(List<TransferRequest> transfers) {
+        Set<String> names = transfers.stream()
+                .map(TransferRequest::getName)
+                .collect(Collectors.toSet());
+
+        Map<String, Money> balances = accountRepository.getBalances(names);
+
+        boolean[] accepted = new boolean[transfers.size()];
+        List<TransferRequest> updates = new ArrayList<>();
+
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequest transfer = transfers.get(i);
+            Money balance = balances.get(transfer.getName());
+            if (balance != null && !balance.plus(transfer.getAmount()).isNegative()) {
+                balances.put(transfer.getName(), balance.plus(transfer.getAmount()));
+                updates.add(transfer);
+                accepted[i] = true;
+            }
+        }
+
+        updates.sort(UPDATE_ORDER);
+
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "UPDATE account SET balance = balance + CAST(? AS DECIMAL) / 100 "
+                        + "WHERE name = ? AND type = ?",
+                updates, updates.size(), (ps, transfer) -> {
+                    ps.setLong(1, transfer.getAmount().getCents());
+                    ps.setString(2, transfer.getName());
+                    ps.setString(3, transfer.getAccountType().name());
+                });
+
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    TransferRequest transfer = updates.get(index);
+                    throw new EmptyResultDataAccessException("No account " + transfer.getName()
+                            + " of type " + transfer.getAccountType(), 1);
+                }
+                index++;
+            }
+        }
+
+        return accepted;
+    }
+}
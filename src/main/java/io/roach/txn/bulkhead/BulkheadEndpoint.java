@@ -0,0 +1,23 @@
+package io.roach.txn.bulkhead;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the transaction bulkhead state at {@code /actuator/bulkhead}.
+ */
+@Component
+@Endpoint(id = "bulkhead")
+public class BulkheadEndpoint {
+    @Autowired
+    private TransactionBulkhead transactionBulkhead;
+
+    @ReadOperation
+    public Map<String, Object> bulkhead() {
+        return transactionBulkhead.getState();
+    }
+}
@@ -0,0 +1,11 @@
+package io.roach.txn.bulkhead;
+
+/**
+ * Thrown when the {@link TransactionBulkhead} queue is full, without waiting.
+ * Mapped to HTTP 503.
+ */
+public class BulkheadFullException extends RuntimeException {
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package io.roach.txn.bulkhead;
+
+/**
+ * Thrown when a transaction boundary could not be admitted by the {@link TransactionBulkhead}
+ * within the queue timeout. Mapped to HTTP 503.
+ */
+public class BulkheadTimeoutException extends RuntimeException {
+    public BulkheadTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,286 @@
+package io.roach.txn.bulkhead;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.aspectj.lang.Signature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.annotation.TransactionHints;
+
+/**
+ * Limits the number of in-flight {@link TransactionBoundary transaction boundaries} to
+ * the connection pool size, so that excess requests wait here in a bounded queue rather
+ * than inside the pool's {@code getConnection} for up to the connection timeout.
+ * <p>
+ * Waiters are admitted by {@link TransactionHints#priority() priority} and in arrival
+ * order within a priority. When the queue is full, a new waiter displaces the most recent
+ * waiter of a lower priority if any, otherwise it is rejected immediately. Each waiter
+ * gives up after the queue timeout.
+ */
+@Component
+public class TransactionBulkhead {
+    private static final TransactionHints.Priority[] PRIORITIES = TransactionHints.Priority.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Waiters per priority ordinal, guarded by lock
+    private final Deque<Waiter>[] queues;
+
+    private final boolean enabled;
+
+    private final int maxQueueLength;
+
+    private final long timeoutMillis;
+
+    // Remaining fields are guarded by lock
+
+    private int maxConcurrent;
+
+    private int inFlight;
+
+    private int queued;
+
+    private long admitted;
+
+    private long admittedAfterWait;
+
+    private long rejected;
+
+    private long timedOut;
+
+    @SuppressWarnings("unchecked")
+    public TransactionBulkhead(
+            @Value("${roach.txn.bulkhead.enabled:true}") boolean enabled,
+            @Value("${roach.txn.bulkhead.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}")
+                    int maxConcurrent,
+            @Value("${roach.txn.bulkhead.max-queue-length:256}") int maxQueueLength,
+            @Value("${roach.txn.bulkhead.timeout-millis:5000}") long timeoutMillis) {
+        this.enabled = enabled;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueueLength = Math.max(0, maxQueueLength);
+        this.timeoutMillis = timeoutMillis;
+        this.queues = new Deque[PRIORITIES.length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Blocks until a slot is available, in priority order.
+     *
+     * @throws BulkheadFullException if the queue is full, or this waiter is displaced by a higher priority one
+     * @throws BulkheadTimeoutException if no slot became available within the timeout
+     */
+    public void acquire(TransactionHints.Priority priority, Signature signature) {
+        if (!enabled) {
+            return;
+        }
+
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Waiter waiter;
+
+        lock.lock();
+        try {
+            if (queued == 0 && inFlight < maxConcurrent) {
+                inFlight++;
+                admitted++;
+                return;
+            }
+            if (queued >= maxQueueLength && !displaceLowerThan(priority)) {
+                rejected++;
+                throw new BulkheadFullException("Transaction queue full (" + queued + ") for method ["
+                        + signature + "]");
+            }
+
+            waiter = new Waiter(lock.newCondition());
+            queues[priority.ordinal()].addLast(waiter);
+            queued++;
+
+            try {
+                while (!waiter.granted) {
+                    if (waiter.displaced) {
+                        rejected++;
+                        throw new BulkheadFullException("Transaction queue full, displaced by higher priority "
+                                + "for method [" + signature + "]");
+                    }
+                    if (remainingNanos <= 0) {
+                        dequeue(priority, waiter);
+                        timedOut++;
+                        throw new BulkheadTimeoutException("Timeout waiting " + timeoutMillis
+                                + " ms for transaction slot for method [" + signature + "]");
+                    }
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    release(); // Hand the slot to the next waiter
+                } else if (!waiter.displaced) {
+                    dequeue(priority, waiter);
+                }
+                Thread.currentThread().interrupt();
+                throw new BulkheadTimeoutException("Interrupted while waiting for transaction slot for method ["
+                        + signature + "]");
+            }
+            admittedAfterWait++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #acquire(TransactionHints.Priority, Signature)} for callers that
+     * poll instead of parking a thread. Succeeds only if a slot is free and nobody is queued.
+     *
+     * @param waitedNanos time the caller has been polling for this attempt so far
+     * @return true if admitted, false to poll again later
+     * @throws BulkheadTimeoutException if not admitted and the caller has waited for the queue timeout
+     */
+    public boolean tryAcquire(long waitedNanos, Signature signature) {
+        if (!enabled) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (queued == 0 && inFlight < maxConcurrent) {
+                inFlight++;
+                admitted++;
+                if (waitedNanos > 0) {
+                    admittedAfterWait++;
+                }
+                return true;
+            }
+            if (waitedNanos >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                timedOut++;
+                throw new BulkheadTimeoutException("Timeout waiting " + timeoutMillis
+                        + " ms for transaction slot for method [" + signature + "]");
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            inFlight--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adjusts the number of concurrent transactions, for example after resizing the pool.
+     * When lowered, in-flight transactions drain before further waiters are admitted.
+     */
+    public void setMaxConcurrent(int maxConcurrent) {
+        lock.lock();
+        try {
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxConcurrent() {
+        lock.lock();
+        try {
+            return maxConcurrent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            state.put("enabled", enabled);
+            state.put("maxConcurrent", maxConcurrent);
+            state.put("maxQueueLength", maxQueueLength);
+            state.put("timeoutMillis", timeoutMillis);
+            state.put("inFlight", inFlight);
+            Map<String, Integer> queuedByPriority = new LinkedHashMap<>();
+            for (TransactionHints.Priority priority : PRIORITIES) {
+                queuedByPriority.put(priority.name(), queues[priority.ordinal()].size());
+            }
+            state.put("queued", queuedByPriority);
+            state.put("admitted", admitted);
+            state.put("admittedAfterWait", admittedAfterWait);
+            state.put("rejected", rejected);
+            state.put("timedOut", timedOut);
+        } finally {
+            lock.unlock();
+        }
+        return state;
+    }
+
+    // Hands free slots to waiters, highest priority first
+    private void dispatch() {
+        for (int p = queues.length - 1; p >= 0 && inFlight < maxConcurrent; p--) {
+            Deque<Waiter> queue = queues[p];
+            while (!queue.isEmpty() && inFlight < maxConcurrent) {
+                Waiter waiter = queue.pollFirst();
+                queued--;
+                inFlight++;
+                admitted++;
+                waiter.granted = true;
+                waiter.condition.signal();
+            }
+        }
+    }
+
+    // Rejects the most recent waiter of the lowest priority below the given one, to make room
+    private boolean displaceLowerThan(TransactionHints.Priority priority) {
+        for (int p = 0; p < priority.ordinal(); p++) {
+            Waiter waiter = queues[p].pollLast();
+            if (waiter != null) {
+                queued--;
+                waiter.displaced = true;
+                waiter.condition.signal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dequeue(TransactionHints.Priority priority, Waiter waiter) {
+        if (queues[priority.ordinal()].remove(waiter)) {
+            queued--;
+        }
+    }
+
+    private static final class Waiter {
+        final Condition condition;
+
+        boolean granted;
+
+        boolean displaced;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package io.roach.txn.cache;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Bounded LRU cache for results of historical (AS OF SYSTEM TIME) reads. Entries are keyed
+ * by method, arguments and the historical read timestamp rounded down to a configurable
+ * granularity, and thus expire when the timestamp moves on to the next window. Timestamps
+ * are derived from the local clock, so lookups don't need the database.
+ * <p>
+ * Cached values are shared between callers and must be immutable plain data.
+ * <p>
+ * The cache is capped both by number of entries and by the estimated size of the results
+ * in bytes, evicting the least recently used entries first.
+ */
+@Component
+public class HistoricalReadCache {
+    private static final long OBJECT_BYTES = 128;
+
+    private static final long STRING_BYTES = 40;
+
+    private static final long COLLECTION_BYTES = 64;
+
+    private static final long ENTRY_BYTES = 32;
+
+    private static final long REFERENCE_BYTES = 8;
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private long nextPurgeMillis;
+
+    private final boolean enabled;
+
+    private final long granularityMillis;
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter evictions;
+
+    public HistoricalReadCache(MeterRegistry registry,
+                               @Value("${roach.txn.result-cache.enabled:true}") boolean enabled,
+                               @Value("${roach.txn.result-cache.granularity-millis:1000}") long granularityMillis,
+                               @Value("${roach.txn.result-cache.max-entries:10000}") int maxEntries,
+                               @Value("${roach.txn.result-cache.max-bytes:67108864}") long maxBytes) {
+        this.enabled = enabled;
+        this.granularityMillis = Math.max(1, granularityMillis);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.hits = Counter.builder("txn.cache.gets")
+                .description("Historical read cache lookups")
+                .tag("result", "hit")
+                .register(registry);
+        this.misses = Counter.builder("txn.cache.gets")
+                .description("Historical read cache lookups")
+                .tag("result", "miss")
+                .register(registry);
+        this.evictions = Counter.builder("txn.cache.evictions")
+                .description("Historical read cache evictions")
+                .register(registry);
+        Gauge.builder("txn.cache.size", this, HistoricalReadCache::size)
+                .description("Historical read cache entries")
+                .register(registry);
+        Gauge.builder("txn.cache.bytes", totalBytes, AtomicLong::get)
+                .description("Estimated size of cached results")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param readTimestampMillis the historical read timestamp (epoch millis)
+     * @param nowMillis the current time the read timestamp was derived from
+     * @return cache key for the given invocation
+     */
+    public Key keyOf(Method method, Object[] args, long readTimestampMillis, long nowMillis) {
+        long window = Math.floorDiv(readTimestampMillis, granularityMillis);
+        long expiresAtMillis = nowMillis + (window + 1) * granularityMillis - readTimestampMillis;
+        return new Key(method, args, window, expiresAtMillis, nowMillis);
+    }
+
+    /**
+     * @return the cached result or null if absent
+     */
+    public Object get(Key key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * @param estimatedBytes estimated size of the result, results larger than the cap are not cached
+     */
+    public void put(Key key, Object value, long estimatedBytes) {
+        if (estimatedBytes > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(value, estimatedBytes));
+            if (previous != null) {
+                totalBytes.addAndGet(-previous.bytes);
+            }
+            totalBytes.addAndGet(estimatedBytes);
+
+            // Purge entries of past windows at most once per window
+            long now = key.nowMillis;
+            if (now >= nextPurgeMillis) {
+                nextPurgeMillis = now + granularityMillis;
+                entries.entrySet().removeIf(e -> {
+                    if (e.getKey().expiresAtMillis <= now) {
+                        totalBytes.addAndGet(-e.getValue().bytes);
+                        return true;
+                    }
+                    return false;
+                });
+            }
+
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext() && (entries.size() > maxEntries || totalBytes.get() > maxBytes)) {
+                Map.Entry<Key, Entry> eldest = it.next();
+                it.remove();
+                totalBytes.addAndGet(-eldest.getValue().bytes);
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Cheap estimate of the retained size of a result, walking collections (including pages
+     * and slices) and maps but not object graphs, which are counted with a flat size.
+     */
+    public static long estimateBytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence) {
+            return STRING_BYTES + 2L * ((CharSequence) value).length();
+        }
+        if (value instanceof Map) {
+            long bytes = COLLECTION_BYTES;
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                bytes += ENTRY_BYTES + estimateBytes(e.getKey()) + estimateBytes(e.getValue());
+            }
+            return bytes;
+        }
+        if (value instanceof Iterable) {
+            long bytes = COLLECTION_BYTES;
+            for (Object element : (Iterable<?>) value) {
+                bytes += REFERENCE_BYTES + estimateBytes(element);
+            }
+            return bytes;
+        }
+        return OBJECT_BYTES;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalBytes.set(0);
+        }
+    }
+
+    public static final class Key {
+        private final Method method;
+
+        private final Object[] args;
+
+        private final long window;
+
+        private final long expiresAtMillis;
+
+        private final long nowMillis;
+
+        private final int hash;
+
+        private Key(Method method, Object[] args, long window, long expiresAtMillis, long nowMillis) {
+            this.method = method;
+            this.args = args;
+            this.window = window;
+            this.expiresAtMillis = expiresAtMillis;
+            this.nowMillis = nowMillis;
+            this.hash = Objects.hash(method, Arrays.deepHashCode(args), window);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return window == key.window
+                    && method.equals(key.method)
+                    && Arrays.deepEquals(args, key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+
+        private final long bytes;
+
+        private Entry(Object value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+}
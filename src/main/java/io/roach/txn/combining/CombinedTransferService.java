@@ -0,0 +1,59 @@
+package io.roach.txn.combining;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Service;
+
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.controller.TransferRequest;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+import io.roach.txn.repository.AccountRepository;
+
+/**
+ * Applies a batch of combined transfers for one account name in a single transaction.
+ */
+@Service
+public class CombinedTransferService {
+    @Autowired
+    private AccountRepository accountRepository;
+
+    /**
+     * Transfers are applied in order against a single balance read for the name, rejecting
+     * the ones that would overdraw it, followed by one update per account type with the
+     * combined delta. Attempts run on the async retry worker pool.
+     *
+     * @return per transfer flag, true if accepted
+     * @throws EmptyResultDataAccessException if an account of the given type doesn't exist,
+     * failing the whole batch since the funds check relied on its amount
+     */
+    @TransactionBoundary(async = true, contentionKey = "#name")
+    public CompletableFuture<boolean[]> applyTransfers(String name, List<TransferRequest> transfers) {
+        Money balance = accountRepository.getBalance(name);
+        Money delta = Money.ZERO;
+        Map<AccountType, Money> deltas = new EnumMap<>(AccountType.class);
+        boolean[] accepted = new boolean[transfers.size()];
+
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferRequest transfer = transfers.get(i);
+            if (balance != null && !balance.plus(delta).plus(transfer.getAmount()).isNegative()) {
+                delta = delta.plus(transfer.getAmount());
+                deltas.merge(transfer.getAccountType(), transfer.getAmount(), Money::plus);
+                accepted[i] = true;
+            }
+        }
+
+        // In type order, like the other multi-row updates
+        deltas.forEach((type, amount) -> {
+            if (amount.signum() != 0 && accountRepository.updateBalance(name, type, amount) == 0) {
+                throw new EmptyResultDataAccessException("No account " + name + " of type " + type, 1);
+            }
+        });
+        return CompletableFuture.completedFuture(accepted);
+    }
+}
@@ -0,0 +1,174 @@
+package io.roach.txn.combining;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.roach.txn.controller.TransferRequest;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+import io.roach.txn.domain.NegativeBalanceException;
+
+/**
+ * Write combining for transfers to the same account. Concurrent transfers for an account
+ * name (of any type, since the funds check is by name) are collected for a short window or
+ * until the batch is full, and applied in a single transaction by {@link CombinedTransferService},
+ * instead of contending for the same rows in separate transactions.
+ * <p>
+ * The window is timed on the shared retry timer and batches are flushed on the bounded
+ * async retry worker pool, where retries wait for backoff and admission without blocking.
+ * Each transfer still gets its own outcome, transfers that would overdraw the account are
+ * rejected individually with a {@link NegativeBalanceException}.
+ */
+@Component
+public class TransferCombiner {
+    private final Map<String, Batch> openBatches = new ConcurrentHashMap<>();
+
+    private final long windowMillis;
+
+    private final int maxBatchSize;
+
+    private final DistributionSummary batchSizes;
+
+    @Autowired
+    private CombinedTransferService combinedTransferService;
+
+    @Autowired
+    @Qualifier("retryScheduler")
+    private ScheduledExecutorService retryScheduler;
+
+    @Autowired
+    @Qualifier("retryExecutor")
+    private ExecutorService retryExecutor;
+
+    public TransferCombiner(MeterRegistry registry,
+                            @Value("${roach.txn.combining.window-millis:5}") long windowMillis,
+                            @Value("${roach.txn.combining.max-batch-size:64}") int maxBatchSize) {
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.batchSizes = DistributionSummary.builder("txn.combining.batch.size")
+                .description("Transfers per combined transaction")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    public CompletableFuture<Void> submit(String name, AccountType type, Money amount) {
+        Transfer transfer = new Transfer(TransferRequest.builder()
+                .setName(name)
+                .setAccountType(type)
+                .setAmount(amount)
+                .build());
+        for (; ; ) {
+            Batch batch = openBatches.computeIfAbsent(name, Batch::new);
+            int size = batch.add(transfer, maxBatchSize);
+            if (size > 0) {
+                if (size == maxBatchSize) {
+                    openBatches.remove(name, batch);
+                    dispatch(batch);
+                } else if (size == 1) {
+                    retryScheduler.schedule(() -> dispatch(batch), windowMillis, TimeUnit.MILLISECONDS);
+                }
+                return transfer.future;
+            }
+            // Closed by a concurrent flush or full
+            openBatches.remove(name, batch);
+        }
+    }
+
+    private void dispatch(Batch batch) {
+        try {
+            retryExecutor.execute(() -> flush(batch));
+        } catch (RejectedExecutionException e) {
+            List<Transfer> transfers = batch.close();
+            if (transfers != null) {
+                openBatches.remove(batch.name, batch);
+                transfers.forEach(t -> t.future.completeExceptionally(e));
+            }
+        }
+    }
+
+    private void flush(Batch batch) {
+        List<Transfer> transfers = batch.close();
+        if (transfers == null) {
+            return; // Already flushed
+        }
+        openBatches.remove(batch.name, batch);
+        batchSizes.record(transfers.size());
+
+        CompletableFuture<boolean[]> outcome;
+        try {
+            outcome = combinedTransferService.applyTransfers(batch.name,
+                    transfers.stream().map(t -> t.request).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            outcome = new CompletableFuture<>();
+            outcome.completeExceptionally(e);
+        }
+        outcome.whenComplete((accepted, ex) -> {
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer transfer = transfers.get(i);
+                if (ex != null) {
+                    transfer.future.completeExceptionally(ex);
+                } else if (accepted[i]) {
+                    transfer.future.complete(null);
+                } else {
+                    transfer.future.completeExceptionally(new NegativeBalanceException(
+                            "Insufficient funds " + transfer.request.getAmount() + " for user " + batch.name));
+                }
+            }
+        });
+    }
+
+    private static final class Transfer {
+        private final TransferRequest request;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Transfer(TransferRequest request) {
+            this.request = request;
+        }
+    }
+
+    private static final class Batch {
+        private final String name;
+
+        private List<Transfer> transfers = new ArrayList<>();
+
+        private Batch(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the batch size after adding, or 0 if the batch is closed or full
+         */
+        synchronized int add(Transfer transfer, int maxSize) {
+            if (transfers == null || transfers.size() >= maxSize) {
+                return 0;
+            }
+            transfers.add(transfer);
+            return transfers.size();
+        }
+
+        /**
+         * @return the transfers to apply, or null if already closed
+         */
+        synchronized List<Transfer> close() {
+            List<Transfer> rv = transfers;
+            transfers = null;
+            return rv;
+        }
+    }
+}
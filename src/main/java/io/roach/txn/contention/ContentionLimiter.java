@@ -0,0 +1,125 @@
+package io.roach.txn.contention;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import io.roach.txn.annotation.TransactionBoundary;
+
+/**
+ * In-process admission control for transaction boundaries declaring a
+ * {@link TransactionBoundary#contentionKey() contention key}. Calls resolving to the
+ * same key are limited to {@link TransactionBoundary#contentionPermits() N} concurrent
+ * transactions through striped fair semaphores, while calls with different keys still
+ * run in parallel (barring stripe collisions).
+ * <p>
+ * Conflicting transactions thereby queue locally instead of aborting and retrying
+ * in the database.
+ */
+@Component
+public class ContentionLimiter {
+    private final ExpressionParser parser = new SpelExpressionParser();
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private final Map<Method, Expression> expressions = new ConcurrentHashMap<>();
+
+    private final Map<Integer, Semaphore[]> stripesByPermits = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+
+    private final int stripes;
+
+    private final long timeoutMillis;
+
+    public ContentionLimiter(@Value("${roach.txn.contention.enabled:true}") boolean enabled,
+                             @Value("${roach.txn.contention.stripes:1024}") int stripes,
+                             @Value("${roach.txn.contention.timeout-millis:15000}") long timeoutMillis) {
+        this.enabled = enabled;
+        // Round up to power of two for mask based indexing
+        this.stripes = stripes <= 1 ? 1 : Integer.highestOneBit(Math.min(stripes - 1, 1 << 29)) << 1;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return the semaphore guarding the contention key of this call, or null if not limited
+     */
+    public Semaphore resolve(ProceedingJoinPoint pjp, TransactionBoundary transactionBoundary) {
+        if (!enabled || transactionBoundary.contentionKey().isEmpty()) {
+            return null;
+        }
+
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        Expression expression = expressions.computeIfAbsent(method,
+                m -> parser.parseExpression(transactionBoundary.contentionKey()));
+        Object key = expression.getValue(new MethodBasedEvaluationContext(
+                pjp.getTarget(), method, pjp.getArgs(), parameterNameDiscoverer));
+
+        Semaphore[] semaphores = stripesByPermits.computeIfAbsent(
+                transactionBoundary.contentionPermits(), this::createStripes);
+        int h = key != null ? key.hashCode() : 0;
+        return semaphores[(h ^ (h >>> 16)) & (semaphores.length - 1)];
+    }
+
+    public void acquire(Semaphore semaphore, ProceedingJoinPoint pjp) {
+        if (semaphore == null) {
+            return;
+        }
+        try {
+            if (!semaphore.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ContentionTimeoutException("Timeout waiting " + timeoutMillis
+                        + " ms for contention key of method [" + pjp.getSignature().toLongString() + "]");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContentionTimeoutException("Interrupted while waiting for contention key of method ["
+                    + pjp.getSignature().toLongString() + "]");
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #acquire(Semaphore, ProceedingJoinPoint)} for callers that
+     * poll instead of parking a thread.
+     *
+     * @param waitedNanos time the caller has been polling for this attempt so far
+     * @return true if acquired, false to poll again later
+     * @throws ContentionTimeoutException if not acquired and the caller has waited for the timeout
+     */
+    public boolean tryAcquire(Semaphore semaphore, long waitedNanos, ProceedingJoinPoint pjp) {
+        if (semaphore == null || semaphore.tryAcquire()) {
+            return true;
+        }
+        if (waitedNanos >= TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+            throw new ContentionTimeoutException("Timeout waiting " + timeoutMillis
+                    + " ms for contention key of method [" + pjp.getSignature().toLongString() + "]");
+        }
+        return false;
+    }
+
+    public void release(Semaphore semaphore) {
+        if (semaphore != null) {
+            semaphore.release();
+        }
+    }
+
+    private Semaphore[] createStripes(int permits) {
+        Semaphore[] semaphores = new Semaphore[stripes];
+        for (int i = 0; i < semaphores.length; i++) {
+            semaphores[i] = new Semaphore(Math.max(1, permits), true);
+        }
+        return semaphores;
+    }
+}
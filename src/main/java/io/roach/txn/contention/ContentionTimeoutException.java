@@ -0,0 +1,11 @@
+package io.roach.txn.contention;
+
+/**
+ * Thrown when a transaction boundary could not be admitted for its contention key
+ * within the configured timeout. Mapped to HTTP 503.
+ */
+public class ContentionTimeoutException extends RuntimeException {
+    public ContentionTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -1,12 +1,24 @@
 package io.roach.txn.controller;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.hateoas.CollectionModel;
+import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.hateoas.PagedModel;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
@@ -16,14 +28,29 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.roach.txn.annotation.TransactionBoundary;
 import io.roach.txn.annotation.TransactionHints;
-import io.roach.txn.domain.AccountEntity;
+import io.roach.txn.batch.BatchTransferService;
+import io.roach.txn.combining.TransferCombiner;
+import io.roach.txn.domain.AccountSummary;
 import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
 import io.roach.txn.domain.NegativeBalanceException;
+import io.roach.txn.ledger.LedgerTransferService;
+import io.roach.txn.query.AccountQueryService;
+import io.roach.txn.repository.AccountExportRepository;
 import io.roach.txn.repository.AccountRepository;
+import io.roach.txn.repository.ShardedAccountRepository;
+import io.roach.txn.retry.RetryBudgetExhaustedException;
+import io.roach.txn.sharding.ShardedTransferService;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
@@ -34,19 +61,107 @@ public class AccountController {
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private TransferCombiner transferCombiner;
+
+    @Autowired
+    private BatchTransferService batchTransferService;
+
+    // Only with the 'sharding' profile
+    @Autowired(required = false)
+    private ShardedTransferService shardedTransferService;
+
+    @Autowired(required = false)
+    private ShardedAccountRepository shardedAccountRepository;
+
+    @Autowired
+    private LedgerTransferService ledgerTransferService;
+
+    @Autowired
+    private AccountExportRepository accountExportRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${roach.txn.export.fetch-size:1000}")
+    private int exportFetchSize;
+
+    @Value("${roach.txn.batch.chunk-size:128}")
+    private int batchChunkSize;
+
+    @Value("${roach.txn.transfer.mode:READ_WRITE}")
+    private TransferMode defaultTransferMode;
+
+    @Value("${roach.txn.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
     @Autowired
     private AccountResourceAssembler accountResourceAssembler;
 
     @Autowired
-    private PagedResourcesAssembler<AccountEntity> pagedResourcesAssembler;
+    private PagedResourcesAssembler<AccountSummary> pagedResourcesAssembler;
+
+    @Autowired
+    private AccountQueryService accountQueryService;
 
     @GetMapping
-    @TransactionBoundary
-    @TransactionHints(readOnly = true, followerRead = true)
     public HttpEntity<PagedModel<AccountModel>> listAccounts(
             @PageableDefault(size = 5, direction = Sort.Direction.ASC) Pageable page) {
         return ResponseEntity.ok(pagedResourcesAssembler
-                .toModel(accountRepository.findAll(page), accountResourceAssembler));
+                .toModel(accountQueryService.findAll(page), accountResourceAssembler));
+    }
+
+    /**
+     * Keyset (seek) pagination by id, without count queries or OFFSET scans. Pages are
+     * linked with opaque cursors.
+     */
+    @GetMapping(value = "/keyset")
+    public HttpEntity<CollectionModel<AccountModel>> listAccountsByKeyset(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "5") int size) {
+        Slice<AccountSummary> slice = accountQueryService.findAfter(KeysetCursor.decode(cursor), size);
+
+        CollectionModel<AccountModel> model = accountResourceAssembler.toCollectionModel(slice.getContent());
+        model.add(linkTo(methodOn(AccountController.class)
+                .listAccountsByKeyset(null, size))
+                .withRel(IanaLinkRelations.FIRST));
+        if (slice.hasNext()) {
+            long lastId = slice.getContent().get(slice.getNumberOfElements() - 1).getId();
+            model.add(linkTo(methodOn(AccountController.class)
+                    .listAccountsByKeyset(KeysetCursor.encode(lastId), size))
+                    .withRel(IanaLinkRelations.NEXT));
+        }
+        return ResponseEntity.ok(model);
+    }
+
+    /**
+     * Streams all accounts as newline delimited JSON, in constant memory through a
+     * forward-only cursor. Not retried since the response may be partially written.
+     * Queued behind other transactions when the bulkhead is saturated.
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    @TransactionBoundary(retryAttempts = 1)
+    @TransactionHints(readOnly = true, followerRead = true, priority = TransactionHints.Priority.LOW)
+    public void exportAccounts(HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            accountExportRepository.streamAll(exportFetchSize, rs -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeNumberField("id", rs.getLong("id"));
+                    generator.writeStringField("name", rs.getString("name"));
+                    generator.writeStringField("type", rs.getString("type"));
+                    generator.writeNumberField("balance", rs.getBigDecimal("balance"));
+                    generator.writeEndObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeRaw('\n');
+        }
     }
 
     @GetMapping(value = "/{id}")
@@ -54,14 +169,21 @@ public class AccountController {
     @TransactionHints(readOnly = true)
     public HttpEntity<AccountModel> getAccount(@PathVariable("id") Long accountId) {
         return new ResponseEntity<>(accountResourceAssembler
-                .toModel(accountRepository.getOne(accountId)), HttpStatus.OK);
+                .toModel(AccountSummary.of(accountRepository.getOne(accountId))), HttpStatus.OK);
     }
 
     @GetMapping(value = "/{name}/balance")
     @TransactionBoundary
     @TransactionHints(readOnly = true)
     public HttpEntity<String> getBalance(@PathVariable("name") String name) {
-        return new ResponseEntity<>(accountRepository.getBalance(name).toPlainString(), HttpStatus.OK);
+        Money balance = accountRepository.getBalance(name);
+        if (shardedAccountRepository != null) {
+            for (Money shardBalance : shardedAccountRepository.getShardBalances(Collections.singleton(name))
+                    .getOrDefault(name, Collections.emptyMap()).values()) {
+                balance = balance.plus(shardBalance);
+            }
+        }
+        return new ResponseEntity<>(balance.toString(), HttpStatus.OK);
     }
 
     @GetMapping(value = "/transfer")
@@ -69,23 +191,117 @@ public class AccountController {
         TransferRequest form = TransferRequest.builder()
                 .setName("alice")
                 .setAccountType(AccountType.expense)
-                .setAmount(new BigDecimal("100.00").negate())
+                .setAmount(Money.of("-100.00"))
                 .build();
         form.add(linkTo(methodOn(AccountController.class)
-                .transfer(form))
+                .transfer(form, null))
                 .withRel("transfer"));
         return new ResponseEntity<>(form, HttpStatus.OK);
     }
 
 
     @PostMapping(value = "/transfer")
-    @TransactionBoundary
-    public HttpEntity<Void> transfer(@RequestBody TransferRequest request) {
+    @TransactionBoundary(contentionKey = "#request.name")
+    @TransactionHints(priorityEscalationAttempts = 3)
+    public HttpEntity<Void> transfer(@RequestBody TransferRequest request,
+                                     @RequestParam(value = "mode", required = false) TransferMode mode) {
+        return doTransfer(request, mode);
+    }
+
+    /**
+     * Same as {@link #transfer(TransferRequest, TransferMode)} but retries are scheduled rather than
+     * blocking the request thread.
+     */
+    @PostMapping(value = "/transfer/async")
+    @TransactionBoundary(async = true, contentionKey = "#request.name")
+    @TransactionHints(priorityEscalationAttempts = 3)
+    public CompletableFuture<HttpEntity<Void>> transferAsync(
+            @RequestBody TransferRequest request,
+            @RequestParam(value = "mode", required = false) TransferMode mode) {
+        return CompletableFuture.completedFuture(doTransfer(request, mode));
+    }
+
+    /**
+     * Same as {@link #transfer(TransferRequest, TransferMode)} but combined with concurrent transfers
+     * for the same account into a single transaction.
+     */
+    @PostMapping(value = "/transfer/combined")
+    public CompletableFuture<HttpEntity<Void>> transferCombined(@RequestBody TransferRequest request) {
+        return transferCombiner.submit(request.getName(), request.getAccountType(), request.getAmount())
+                .thenApply(v -> new ResponseEntity<>(HttpStatus.OK));
+    }
+
+    /**
+     * Same as {@link #transfer(TransferRequest, TransferMode)} but against a random balance shard
+     * of the account, for hot accounts. Not found unless sharding is enabled.
+     */
+    @PostMapping(value = "/transfer/sharded")
+    public HttpEntity<Void> transferSharded(@RequestBody TransferRequest request) {
+        if (shardedTransferService == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        shardedTransferService.transfer(request.getName(), request.getAccountType(), request.getAmount());
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    /**
+     * Applies many transfers in chunks, each chunk in a single transaction. Transfers that
+     * would overdraw the account are rejected individually.
+     */
+    @PostMapping(value = "/transfers")
+    public HttpEntity<List<TransferResult>> transfers(@RequestBody List<TransferRequest> requests) {
+        List<TransferResult> results = new ArrayList<>(requests.size());
+
+        for (int offset = 0; offset < requests.size(); offset += batchChunkSize) {
+            List<TransferRequest> chunk = requests.subList(offset,
+                    Math.min(offset + batchChunkSize, requests.size()));
+            try {
+                boolean[] accepted = batchTransferService.applyTransfers(chunk);
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(accepted[i]
+                            ? new TransferResult(chunk.get(i), TransferResult.Status.ACCEPTED, null)
+                            : new TransferResult(chunk.get(i), TransferResult.Status.INSUFFICIENT_FUNDS,
+                            "Insufficient funds"));
+                }
+            } catch (RetryBudgetExhaustedException e) {
+                // Shed the remaining chunks
+                requests.subList(offset, requests.size()).forEach(request -> results.add(
+                        new TransferResult(request, TransferResult.Status.FAILED, e.getMessage())));
+                break;
+            } catch (RuntimeException e) {
+                chunk.forEach(request -> results.add(
+                        new TransferResult(request, TransferResult.Status.FAILED, e.getMessage())));
+            }
+        }
+
+        return ResponseEntity.ok(results);
+    }
+
+    private HttpEntity<Void> doTransfer(TransferRequest request, TransferMode mode) {
+        mode = mode != null ? mode : defaultTransferMode;
+
+        if (mode == TransferMode.LEDGER) {
+            if (!ledgerEnabled) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ledger not enabled");
+            }
+            ledgerTransferService.transfer(request.getName(), request.getAccountType(), request.getAmount());
+            return new ResponseEntity<>(HttpStatus.OK);
+        }
+
+        if (mode == TransferMode.CONDITIONAL) {
+            if (accountRepository.updateBalanceConditionally(request.getName(),
+                    request.getAccountType(), request.getAmount()) == 0) {
+                throw new NegativeBalanceException(
+                        "Insufficient funds " + request.getAmount() + " for user " + request.getName());
+            }
+            return new ResponseEntity<>(HttpStatus.OK);
+        }
+
         gcPause(25, 150);
 
-        BigDecimal totalBalance = accountRepository.getBalance(request.getName());
+        Money totalBalance = accountRepository.getBalance(request.getName());
 
-        if (totalBalance.add(request.getAmount()).compareTo(BigDecimal.ZERO) < 0) {
+        if (totalBalance.plus(request.getAmount()).isNegative()) {
             throw new NegativeBalanceException(
                     "Insufficient funds " + request.getAmount() + " for user " + request.getName());
         }
@@ -110,7 +326,10 @@ public class AccountController {
     @PostMapping(value = "/reset")
     @TransactionBoundary
     public HttpEntity<Void> reset() {
-        accountRepository.resetBalances(new BigDecimal(500.00));
+        accountRepository.resetBalances(Money.of("500.00"));
+        if (shardedAccountRepository != null) {
+            shardedAccountRepository.resetShards();
+        }
         return ResponseEntity.ok().build();
     }
 }
@@ -1,11 +1,10 @@
 package io.roach.txn.controller;
 
-import java.math.BigDecimal;
-
 import org.springframework.hateoas.RepresentationModel;
 import org.springframework.hateoas.server.core.Relation;
 
 import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
 
 @Relation(value = "account",
         collectionRelation = "accounts")
@@ -14,7 +13,7 @@ public class AccountModel extends RepresentationModel<AccountModel> {
 
     private AccountType type;
 
-    private BigDecimal balance;
+    private Money balance;
 
     public String getName() {
         return name;
@@ -32,11 +31,11 @@ public class AccountModel extends RepresentationModel<AccountModel> {
         this.type = type;
     }
 
-    public BigDecimal getBalance() {
+    public Money getBalance() {
         return balance;
     }
 
-    public void setBalance(BigDecimal balance) {
+    public void setBalance(Money balance) {
         this.balance = balance;
     }
 }
@@ -4,29 +4,29 @@ import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.hateoas.server.mvc.RepresentationModelAssemblerSupport;
 import org.springframework.stereotype.Component;
 
-import io.roach.txn.domain.AccountEntity;
+import io.roach.txn.domain.AccountSummary;
 
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
 
 @Component
 public class AccountResourceAssembler
-        extends RepresentationModelAssemblerSupport<AccountEntity, AccountModel> {
+        extends RepresentationModelAssemblerSupport<AccountSummary, AccountModel> {
 
     public AccountResourceAssembler() {
         super(RootController.class, AccountModel.class);
     }
 
     @Override
-    public AccountModel toModel(AccountEntity entity) {
+    public AccountModel toModel(AccountSummary account) {
         AccountModel resource = new AccountModel();
 
-        resource.setName(entity.getName());
-        resource.setType(entity.getType());
-        resource.setBalance(entity.getBalance());
+        resource.setName(account.getName());
+        resource.setType(account.getType());
+        resource.setBalance(account.getBalance());
 
         resource.add(linkTo(methodOn(AccountController.class)
-                .getAccount(entity.getId())
+                .getAccount(account.getId())
         ).withRel(IanaLinkRelations.SELF));
 
         return resource;
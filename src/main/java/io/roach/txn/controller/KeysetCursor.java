@@ -0,0 +1,38 @@
+package io.roach.txn.controller;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Opaque cursor for keyset pagination, encoding the last seen account id.
+ */
+public abstract class KeysetCursor {
+    private KeysetCursor() {
+    }
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(lastId).array());
+    }
+
+    /**
+     * @return the last seen id, or {@link Long#MIN_VALUE} for the first page
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length != Long.BYTES) {
+                throw new IllegalArgumentException("Invalid length");
+            }
+            return ByteBuffer.wrap(bytes).getLong();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package io.roach.txn.controller;
+
+import java.io.IOException;
+
+import org.springframework.boot.jackson.JsonComponent;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import io.roach.txn.domain.Money;
+
+/**
+ * Reads and writes {@link Money} as JSON decimal numbers (such as 100.00), same as for
+ * BigDecimal amounts. Decimal strings are accepted as well.
+ */
+@JsonComponent
+public class MoneyJsonComponent {
+    public static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeNumber(value.toString());
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonToken token = p.currentToken();
+            if (token == JsonToken.VALUE_NUMBER_INT
+                    || token == JsonToken.VALUE_NUMBER_FLOAT
+                    || token == JsonToken.VALUE_STRING) {
+                try {
+                    return Money.of(p.getText().trim());
+                } catch (NumberFormatException e) {
+                    return (Money) ctxt.handleWeirdStringValue(Money.class, p.getText(), e.getMessage());
+                }
+            }
+            return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+        }
+    }
+}
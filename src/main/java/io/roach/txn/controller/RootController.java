@@ -28,7 +28,7 @@ public class RootController {
                 .withRel("balance-total"));
 
         index.add(linkTo(methodOn(AccountController.class)
-                .transfer(null))
+                .transfer(null, null))
                 .withRel("transfer"));
 
         index.add(linkTo(methodOn(AccountController.class)
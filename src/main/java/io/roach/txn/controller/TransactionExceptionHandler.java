@@ -0,0 +1,41 @@
+package io.roach.txn.controller;
+
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import io.roach.txn.bulkhead.BulkheadFullException;
+import io.roach.txn.bulkhead.BulkheadTimeoutException;
+import io.roach.txn.contention.ContentionTimeoutException;
+import io.roach.txn.retry.RetryBudgetExhaustedException;
+
+@RestControllerAdvice
+public class TransactionExceptionHandler {
+    @ExceptionHandler(RetryBudgetExhaustedException.class)
+    public ResponseEntity<String> handleRetryBudgetExhausted(RetryBudgetExhaustedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(ContentionTimeoutException.class)
+    public ResponseEntity<String> handleContentionTimeout(ContentionTimeoutException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler({BulkheadFullException.class, BulkheadTimeoutException.class})
+    public ResponseEntity<String> handleBulkheadRejection(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(EmptyResultDataAccessException.class)
+    public ResponseEntity<String> handleNoSuchAccount(EmptyResultDataAccessException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(ex.getMessage());
+    }
+}
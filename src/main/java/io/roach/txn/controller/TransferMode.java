@@ -0,0 +1,21 @@
+package io.roach.txn.controller;
+
+/**
+ * How a transfer checks for sufficient funds.
+ */
+public enum TransferMode {
+    /**
+     * Read the balance, check in the application and then update (two round trips).
+     */
+    READ_WRITE,
+    /**
+     * Single UPDATE guarded by a sub-select on the balance (one round trip).
+     */
+    CONDITIONAL,
+    /**
+     * Append a ledger entry, guarded by the account row for deposits and by a sub-select on
+     * the balance (checkpoint plus pending entries) for withdrawals. Rejected unless the
+     * ledger is enabled ('ledger' profile).
+     */
+    LEDGER
+}
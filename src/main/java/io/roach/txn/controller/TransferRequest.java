@@ -1,10 +1,9 @@
 package io.roach.txn.controller;
 
-import java.math.BigDecimal;
-
 import org.springframework.hateoas.RepresentationModel;
 
 import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
 
 public class TransferRequest extends RepresentationModel<TransferRequest> {
     public static Builder builder() {
@@ -27,7 +26,7 @@ public class TransferRequest extends RepresentationModel<TransferRequest> {
             return this;
         }
 
-        public Builder setAmount(BigDecimal amount) {
+        public Builder setAmount(Money amount) {
             instance.amount = amount;
             return this;
         }
@@ -41,7 +40,7 @@ public class TransferRequest extends RepresentationModel<TransferRequest> {
 
     private AccountType accountType;
 
-    private BigDecimal amount;
+    private Money amount;
 
     private TransferRequest() {
     }
@@ -54,7 +53,7 @@ public class TransferRequest extends RepresentationModel<TransferRequest> {
         return accountType;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
 }
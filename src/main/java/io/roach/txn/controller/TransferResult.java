@@ -0,0 +1,53 @@
+package io.roach.txn.controller;
+
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+
+/**
+ * Outcome of a single transfer in a batch.
+ */
+public class TransferResult {
+    public enum Status {
+        ACCEPTED,
+        INSUFFICIENT_FUNDS,
+        FAILED
+    }
+
+    private final String name;
+
+    private final AccountType accountType;
+
+    private final Money amount;
+
+    private final Status status;
+
+    private final String message;
+
+    public TransferResult(TransferRequest request, Status status, String message) {
+        this.name = request.getName();
+        this.accountType = request.getAccountType();
+        this.amount = request.getAmount();
+        this.status = status;
+        this.message = message;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AccountType getAccountType() {
+        return accountType;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
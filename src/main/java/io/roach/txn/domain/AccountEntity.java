@@ -27,12 +27,17 @@ public class AccountEntity {
     private AccountType type;
 
     @Column(length = 25, nullable = false)
+    // Kept as the column type, so that JPQL queries bind and return BigDecimal without conversion
     private BigDecimal balance;
 
     public Long getId() {
         return id;
     }
 
+    public void setId(Long id) {
+        this.id = id;
+    }
+
     public String getName() {
         return name;
     }
@@ -49,12 +54,12 @@ public class AccountEntity {
         this.type = type;
     }
 
-    public BigDecimal getBalance() {
-        return balance;
+    public Money getBalance() {
+        return balance != null ? Money.of(balance) : null;
     }
 
-    public void setBalance(BigDecimal balance) {
-        this.balance = balance;
+    public void setBalance(Money balance) {
+        this.balance = balance != null ? balance.toBigDecimal() : null;
     }
 }
 
@@ -0,0 +1,38 @@
+package io.roach.txn.domain;
+
+/**
+ * Balance shard of an account and type. Shard 0 is the account row itself, shards
+ * {@code 1..N-1} are rows of the {@code account_shard} table.
+ */
+public final class AccountShard {
+    private final String name;
+
+    private final AccountType type;
+
+    private final int shard;
+
+    private final Money balance;
+
+    public AccountShard(String name, AccountType type, int shard, Money balance) {
+        this.name = name;
+        this.type = type;
+        this.shard = shard;
+        this.balance = balance;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AccountType getType() {
+        return type;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public Money getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,42 @@
+package io.roach.txn.domain;
+
+/**
+ * Immutable snapshot of an account row, safe to share between requests (for example from
+ * the historical read cache) unlike the managed {@link AccountEntity}.
+ */
+public final class AccountSummary {
+    private final Long id;
+
+    private final String name;
+
+    private final AccountType type;
+
+    private final Money balance;
+
+    public static AccountSummary of(AccountEntity entity) {
+        return new AccountSummary(entity.getId(), entity.getName(), entity.getType(), entity.getBalance());
+    }
+
+    public AccountSummary(Long id, String name, AccountType type, Money balance) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.balance = balance;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AccountType getType() {
+        return type;
+    }
+
+    public Money getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,79 @@
+package io.roach.txn.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Immutable transfer appended to the ledger, until folded into the account balance.
+ */
+@Entity
+@Table(name = "account_ledger")
+public class LedgerEntryEntity {
+    @Id
+    @Column
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 128, nullable = false, updatable = false)
+    private String name;
+
+    @Column(length = 25, nullable = false, updatable = false)
+    @Enumerated(EnumType.STRING)
+    private AccountType type;
+
+    @Column(nullable = false, updatable = false)
+    // Kept as the column type, so that JPQL queries bind and return BigDecimal without conversion
+    private BigDecimal amount;
+
+    @Column(name = "created_at", insertable = false, updatable = false)
+    private Instant createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public AccountType getType() {
+        return type;
+    }
+
+    public void setType(AccountType type) {
+        this.type = type;
+    }
+
+    public Money getAmount() {
+        return amount != null ? Money.of(amount) : null;
+    }
+
+    public void setAmount(Money amount) {
+        this.amount = amount != null ? amount.toBigDecimal() : null;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,140 @@
+package io.roach.txn.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Immutable fixed-point monetary amount with two fraction digits, stored as minor units
+ * (cents) in a long. Arithmetic is overflow checked and throws {@link ArithmeticException}
+ * rather than wrapping around.
+ * <p>
+ * Cheaper than {@link BigDecimal} for the balance checks on the transfer path. The
+ * {@code NUMERIC(19,2)} balance column is converted at the JDBC and JPA repository boundaries.
+ */
+public final class Money implements Comparable<Money>, Serializable {
+    public static final Money ZERO = new Money(0);
+
+    private static final int SCALE = 2;
+
+    private final long cents;
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    public static Money of(BigDecimal amount) {
+        return ofCents(amount.movePointRight(SCALE).longValueExact());
+    }
+
+    /**
+     * @param amount decimal string such as "-100", "12.5" or "12.50"
+     * @throws NumberFormatException if not a decimal number with at most two fraction digits
+     */
+    public static Money of(String amount) {
+        int len = amount.length();
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (amount.charAt(0) == '-' || amount.charAt(0) == '+')) {
+            negative = amount.charAt(0) == '-';
+            i++;
+        }
+
+        long cents = 0;
+        int fractionDigits = -1;
+        boolean digits = false;
+        try {
+            for (; i < len; i++) {
+                char c = amount.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    if (fractionDigits >= 0 && ++fractionDigits > SCALE) {
+                        if (c != '0') {
+                            throw new NumberFormatException("More than " + SCALE + " fraction digits: " + amount);
+                        }
+                        continue; // Trailing zero
+                    }
+                    cents = Math.addExact(Math.multiplyExact(cents, 10), c - '0');
+                    digits = true;
+                } else if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else {
+                    // Exponent notation and such
+                    return of(new BigDecimal(amount));
+                }
+            }
+            for (int f = Math.max(fractionDigits, 0); f < SCALE; f++) {
+                cents = Math.multiplyExact(cents, 10);
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + amount);
+        }
+        if (!digits) {
+            throw new NumberFormatException("Not a decimal number: '" + amount + "'");
+        }
+        return ofCents(negative ? -cents : cents);
+    }
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    public Money plus(Money other) {
+        return ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money negate() {
+        return ofCents(Math.negateExact(cents));
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    public int signum() {
+        return Long.signum(cents);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money o) {
+        return Long.compare(cents, o.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof Money && cents == ((Money) o).cents);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    /**
+     * @return plain decimal string with two fraction digits, such as "-100.00"
+     */
+    @Override
+    public String toString() {
+        long units = cents / 100;
+        int fraction = (int) Math.abs(cents % 100);
+        StringBuilder sb = new StringBuilder(24);
+        if (cents < 0 && units == 0) {
+            sb.append('-');
+        }
+        return sb.append(units)
+                .append('.')
+                .append((char) ('0' + fraction / 10))
+                .append((char) ('0' + fraction % 10))
+                .toString();
+    }
+}
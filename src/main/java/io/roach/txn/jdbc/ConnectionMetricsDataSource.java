@@ -0,0 +1,102 @@
+package io.roach.txn.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import io.roach.txn.metrics.BoundaryMetrics;
+import io.roach.txn.metrics.TransactionMetrics;
+
+/**
+ * DataSource decorator recording connection acquisition and usage time against the
+ * {@link TransactionMetrics#getCurrentBoundary() transaction boundary} in progress on
+ * the calling thread. Connections obtained outside of a boundary are not instrumented.
+ */
+public class ConnectionMetricsDataSource extends DelegatingDataSource {
+    public ConnectionMetricsDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        BoundaryMetrics metrics = TransactionMetrics.getCurrentBoundary();
+        if (metrics == null) {
+            return super.getConnection();
+        }
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        long acquired = System.nanoTime();
+        metrics.recordConnectionAcquire(acquired - start);
+        return usageProxy(connection, metrics, acquired);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        BoundaryMetrics metrics = TransactionMetrics.getCurrentBoundary();
+        if (metrics == null) {
+            return super.getConnection(username, password);
+        }
+        long start = System.nanoTime();
+        Connection connection = super.getConnection(username, password);
+        long acquired = System.nanoTime();
+        metrics.recordConnectionAcquire(acquired - start);
+        return usageProxy(connection, metrics, acquired);
+    }
+
+    private Connection usageProxy(Connection target, BoundaryMetrics metrics, long acquired) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class},
+                new UsageInvocationHandler(target, metrics, acquired));
+    }
+
+    private static class UsageInvocationHandler implements InvocationHandler {
+        private final Connection target;
+
+        private final BoundaryMetrics metrics;
+
+        private final long acquired;
+
+        private boolean closed;
+
+        UsageInvocationHandler(Connection target, BoundaryMetrics metrics, long acquired) {
+            this.target = target;
+            this.metrics = metrics;
+            this.acquired = acquired;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        try {
+                            target.close();
+                        } finally {
+                            metrics.recordConnectionUsage(System.nanoTime() - acquired);
+                        }
+                    }
+                    return null;
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
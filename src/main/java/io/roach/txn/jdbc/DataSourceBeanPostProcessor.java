@@ -0,0 +1,45 @@
+package io.roach.txn.jdbc;
+
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Decorates the primary application data source, innermost first, with a
+ * {@link SessionStateDataSource} and a {@link ConnectionMetricsDataSource}, either of
+ * which can be turned off. Session state is keyed by physical connection, so this also
+ * covers the target pools of a routing data source.
+ */
+public class DataSourceBeanPostProcessor implements BeanPostProcessor {
+    private static final String DATA_SOURCE_BEAN_NAME = "dataSource";
+
+    private final Set<String> retainedVariables;
+
+    private final boolean connectionMetrics;
+
+    /**
+     * @param retainedVariables session variables kept across checkouts, or null to not track session state
+     * @param connectionMetrics whether to record connection acquisition and usage time
+     */
+    public DataSourceBeanPostProcessor(Set<String> retainedVariables, boolean connectionMetrics) {
+        this.retainedVariables = retainedVariables;
+        this.connectionMetrics = connectionMetrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!DATA_SOURCE_BEAN_NAME.equals(beanName) || !(bean instanceof DataSource)) {
+            return bean;
+        }
+        DataSource dataSource = (DataSource) bean;
+        if (retainedVariables != null) {
+            dataSource = new SessionStateDataSource(dataSource, retainedVariables);
+        }
+        if (connectionMetrics) {
+            dataSource = new ConnectionMetricsDataSource(dataSource);
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,125 @@
+package io.roach.txn.jdbc;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Session variables applied to a single physical connection. Variables are tracked by
+ * name with values as SQL literals, allowing SET statements for values already in effect
+ * to be skipped.
+ * <p>
+ * Variables not listed as retained are considered dirty once set. Nothing is sent when the
+ * connection is returned to the pool, instead dirty variables become stale on the next
+ * checkout. Stale variables set again to the same value cost nothing, the remaining ones
+ * are reset along with the next SET, or in a single round trip before the first statement
+ * of a checkout that sets no variables.
+ * <p>
+ * Not thread safe, a connection is only used by one thread at a time.
+ */
+public final class SessionState {
+    private final Map<String, String> values = new HashMap<>();
+
+    private final Set<String> dirty = new LinkedHashSet<>();
+
+    private final Set<String> stale = new LinkedHashSet<>();
+
+    // Variables set or reset in the current transaction, reverted by a rollback
+    private final Set<String> touched = new LinkedHashSet<>();
+
+    private final Set<String> resetInTransaction = new LinkedHashSet<>();
+
+    private final Set<String> retained;
+
+    private boolean claimed;
+
+    SessionState(Set<String> retained) {
+        this.retained = retained;
+    }
+
+    /**
+     * @param variables session variables by name with values as SQL literals
+     * @return RESET statements for the stale variables not in the given set, followed by
+     * SET statements for the variables not already in effect, or an empty string
+     */
+    public String pendingStatements(Map<String, String> variables) {
+        StringBuilder sb = new StringBuilder();
+        stale.stream()
+                .filter(name -> !variables.containsKey(name))
+                .forEach(name -> sb.append("RESET ").append(name).append("; "));
+        variables.forEach((name, value) -> {
+            if (!value.equals(values.get(name))) {
+                sb.append("SET ").append(name).append(" = ").append(value).append("; ");
+            }
+        });
+        // The resets are sent by the caller, not before its statement
+        claimed = true;
+        return sb.toString();
+    }
+
+    /**
+     * Marks the given variables as in effect, after successful execution of the
+     * statements returned by {@link #pendingStatements(Map)}.
+     */
+    public void applied(Map<String, String> variables) {
+        stale.removeAll(variables.keySet());
+        resetApplied();
+        variables.forEach((name, value) -> {
+            if (!value.equals(values.put(name, value))) {
+                touched.add(name);
+            }
+            if (!retained.contains(name)) {
+                dirty.add(name);
+            }
+        });
+    }
+
+    /**
+     * Forgets the values set or reset within the current transaction, for example after a
+     * failed SET or a rollback (which reverts session variables set within the transaction
+     * in PostgreSQL). Values committed earlier are still in effect.
+     */
+    public void invalidate() {
+        values.keySet().removeAll(touched);
+        dirty.addAll(resetInTransaction);
+        stale.addAll(resetInTransaction);
+        touched.clear();
+        resetInTransaction.clear();
+        claimed = false;
+    }
+
+    void committed() {
+        touched.clear();
+        resetInTransaction.clear();
+    }
+
+    void checkedOut() {
+        stale.addAll(dirty);
+        claimed = false;
+    }
+
+    boolean hasUnclaimedResets() {
+        return !claimed && !stale.isEmpty();
+    }
+
+    String resetStatements() {
+        StringBuilder sb = new StringBuilder();
+        stale.forEach(name -> sb.append("RESET ").append(name).append("; "));
+        return sb.toString();
+    }
+
+    void resetApplied() {
+        values.keySet().removeAll(stale);
+        dirty.removeAll(stale);
+        touched.addAll(stale);
+        resetInTransaction.addAll(stale);
+        stale.clear();
+        claimed = false;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionState{values=" + values + ", dirty=" + dirty + ", stale=" + stale + '}';
+    }
+}
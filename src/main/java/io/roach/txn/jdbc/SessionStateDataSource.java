@@ -0,0 +1,138 @@
+package io.roach.txn.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * DataSource decorator tracking the {@link SessionState session variables} applied to each
+ * physical connection of the underlying pool. The state survives across checkouts of the
+ * same physical connection and is available through {@code Connection.unwrap(SessionState.class)}.
+ * <p>
+ * Nothing is sent when a connection is closed (returned to the pool). Dirty session variables
+ * not set again by the next checkout are reset along with its first SET, or otherwise in a
+ * single round trip before its first statement, so that they don't leak into later transactions.
+ */
+public class SessionStateDataSource extends DelegatingDataSource {
+    private static final Logger logger = LoggerFactory.getLogger(SessionStateDataSource.class);
+
+    // Keyed by physical connection, evicted along with the connection
+    private final Map<Connection, SessionState> sessionStates = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Set<String> retainedVariables;
+
+    public SessionStateDataSource(DataSource targetDataSource, Set<String> retainedVariables) {
+        super(targetDataSource);
+        this.retainedVariables = Collections.unmodifiableSet(retainedVariables);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return sessionStateProxy(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return sessionStateProxy(super.getConnection(username, password));
+    }
+
+    private Connection sessionStateProxy(Connection target) throws SQLException {
+        Connection physicalConnection = target.isWrapperFor(Connection.class)
+                ? target.unwrap(Connection.class) : target;
+        SessionState sessionState = sessionStates.computeIfAbsent(physicalConnection,
+                c -> new SessionState(retainedVariables));
+        sessionState.checkedOut();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class},
+                new SessionStateInvocationHandler(target, sessionState));
+    }
+
+    private static class SessionStateInvocationHandler implements InvocationHandler {
+        private final Connection target;
+
+        private final SessionState sessionState;
+
+        private boolean closed;
+
+        SessionStateInvocationHandler(Connection target, SessionState sessionState) {
+            this.target = target;
+            this.sessionState = sessionState;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "unwrap":
+                    if (SessionState.class.equals(args[0])) {
+                        return sessionState;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (SessionState.class.equals(args[0])) {
+                        return true;
+                    }
+                    break;
+                case "rollback":
+                    // Also on rollback to savepoint, the hints are applied after the savepoint
+                    sessionState.invalidate();
+                    break;
+                case "commit":
+                    sessionState.committed();
+                    break;
+                case "createStatement":
+                case "prepareStatement":
+                case "prepareCall":
+                    if (sessionState.hasUnclaimedResets()) {
+                        resetStaleVariables();
+                    }
+                    break;
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        // Work not committed is rolled back by the pool
+                        sessionState.invalidate();
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        private void resetStaleVariables() throws SQLException {
+            try (Statement statement = target.createStatement()) {
+                statement.execute(sessionState.resetStatements());
+                sessionState.resetApplied();
+                if (target.getAutoCommit()) {
+                    sessionState.committed();
+                }
+            } catch (SQLException e) {
+                logger.warn("Could not reset session variables: " + e.getMessage());
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.roach.txn.jdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes connection requests to separate pools for read-write and read-only transactions,
+ * based on the {@link Route} bound to the current thread. Connections are acquired when
+ * a transaction begins, so the route must be bound before entering the TX advice.
+ */
+public class TransactionRoutingDataSource extends AbstractRoutingDataSource {
+    public enum Route {
+        WRITE,
+        READ
+    }
+
+    private static final ThreadLocal<Route> currentRoute = new ThreadLocal<>();
+
+    /**
+     * @param route the route to bind to the current thread, or null to unbind
+     * @return the previously bound route, if any
+     */
+    public static Route setCurrentRoute(Route route) {
+        Route previous = currentRoute.get();
+        if (route != null) {
+            currentRoute.set(route);
+        } else {
+            currentRoute.remove();
+        }
+        return previous;
+    }
+
+    public TransactionRoutingDataSource(DataSource writeDataSource, DataSource readDataSource) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(Route.WRITE, writeDataSource);
+        targetDataSources.put(Route.READ, readDataSource);
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(writeDataSource);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentRoute.get();
+    }
+}
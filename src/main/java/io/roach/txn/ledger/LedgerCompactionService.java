@@ -0,0 +1,72 @@
+package io.roach.txn.ledger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.domain.LedgerEntryEntity;
+import io.roach.txn.repository.LedgerRepository;
+
+/**
+ * Folds a batch of the oldest ledger entries into the account rows in a single
+ * transaction, with a single JDBC batch of one update per account and type. Entries are
+ * only removed once folded, none are dropped.
+ */
+@Service
+public class LedgerCompactionService {
+    @Autowired
+    private LedgerRepository ledgerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Not deprioritized, since a starved compactor lets the tail read by withdrawals grow.
+     *
+     * @return number of entries folded
+     */
+    @TransactionBoundary
+    public int compact(int batchSize) {
+        List<LedgerEntryEntity> entries = ledgerRepository.removeOldest(batchSize);
+
+        Map<String, LedgerEntryEntity> sums = new LinkedHashMap<>();
+        for (LedgerEntryEntity entry : entries) {
+            sums.merge(entry.getName() + "/" + entry.getType(), entry, (sum, next) -> {
+                LedgerEntryEntity merged = new LedgerEntryEntity();
+                merged.setName(sum.getName());
+                merged.setType(sum.getType());
+                merged.setAmount(sum.getAmount().plus(next.getAmount()));
+                return merged;
+            });
+        }
+
+        List<LedgerEntryEntity> updates = new ArrayList<>(sums.values());
+        int[][] counts = jdbcTemplate.batchUpdate("UPDATE account SET balance = balance + CAST(? AS DECIMAL) / 100 "
+                        + "WHERE name = ? AND type = ?",
+                updates, updates.size(), (ps, sum) -> {
+                    ps.setLong(1, sum.getAmount().getCents());
+                    ps.setString(2, sum.getName());
+                    ps.setString(3, sum.getType().name());
+                });
+
+        int i = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                LedgerEntryEntity sum = updates.get(i++);
+                if (count == 0) {
+                    // Rolls back, keeping the entries
+                    throw new EmptyResultDataAccessException("No account " + sum.getName()
+                            + " of type " + sum.getType(), 1);
+                }
+            }
+        }
+        return entries.size();
+    }
+}
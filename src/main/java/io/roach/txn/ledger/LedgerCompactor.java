@@ -0,0 +1,84 @@
+package io.roach.txn.ledger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Periodically folds ledger entries into the account rows, in batches of separate
+ * transactions until the ledger is drained or the batch limit per run is reached. Keeps
+ * the tail read by guarded ledger withdrawals short. Only runs if the ledger is enabled.
+ */
+@Component
+@ConditionalOnExpression("${roach.txn.ledger.enabled:false} and ${roach.txn.ledger.compaction.enabled:true}")
+public class LedgerCompactor {
+    private static final Logger logger = LoggerFactory.getLogger(LedgerCompactor.class);
+
+    private final ScheduledExecutorService executor;
+
+    private final long intervalMillis;
+
+    private final int batchSize;
+
+    private final int maxBatches;
+
+    private final Counter folded;
+
+    @Autowired
+    private LedgerCompactionService ledgerCompactionService;
+
+    public LedgerCompactor(@Value("${roach.txn.ledger.compaction.interval-millis:1000}") long intervalMillis,
+                           @Value("${roach.txn.ledger.compaction.batch-size:512}") int batchSize,
+                           @Value("${roach.txn.ledger.compaction.max-batches:16}") int maxBatches,
+                           MeterRegistry meterRegistry) {
+        this.intervalMillis = intervalMillis;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatches = Math.max(1, maxBatches);
+        this.folded = Counter.builder("txn.ledger.folded")
+                .description("Ledger entries folded into account balances")
+                .register(meterRegistry);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "txn-ledger-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        executor.scheduleWithFixedDelay(this::compact, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void compact() {
+        try {
+            for (int i = 0; i < maxBatches; i++) {
+                int count = ledgerCompactionService.compact(batchSize);
+                folded.increment(count);
+                if (count < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Ledger compaction failed", e);
+        }
+    }
+}
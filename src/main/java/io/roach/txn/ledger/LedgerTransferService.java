@@ -0,0 +1,39 @@
+package io.roach.txn.ledger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Service;
+
+import io.roach.txn.annotation.TransactionService;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+import io.roach.txn.domain.NegativeBalanceException;
+import io.roach.txn.repository.LedgerRepository;
+
+/**
+ * Transfers appended to the ledger rather than updating the account rows, folded into the
+ * balance later by the {@link LedgerCompactor}.
+ */
+@Service
+@TransactionService
+public class LedgerTransferService {
+    @Autowired
+    private LedgerRepository ledgerRepository;
+
+    /**
+     * Deposits are appended without reading the balance, withdrawals only if the balance
+     * (checkpoint plus pending entries) covers them.
+     *
+     * @throws EmptyResultDataAccessException if there is no account of the type for a deposit
+     * @throws NegativeBalanceException if a withdrawal is not covered (or there is no such account)
+     */
+    public void transfer(String name, AccountType type, Money amount) {
+        if (!amount.isNegative()) {
+            if (ledgerRepository.append(name, type, amount) == 0) {
+                throw new EmptyResultDataAccessException("No account " + name + " of type " + type, 1);
+            }
+        } else if (ledgerRepository.appendConditionally(name, type, amount) == 0) {
+            throw new NegativeBalanceException("Insufficient funds " + amount + " for user " + name);
+        }
+    }
+}
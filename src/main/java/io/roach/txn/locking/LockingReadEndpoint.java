@@ -0,0 +1,23 @@
+package io.roach.txn.locking;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the read mode of each transaction boundary method at {@code /actuator/lockingreads}.
+ */
+@Component
+@Endpoint(id = "lockingreads")
+public class LockingReadEndpoint {
+    @Autowired
+    private LockingReadPolicy lockingReadPolicy;
+
+    @ReadOperation
+    public Map<String, Object> lockingReads() {
+        return lockingReadPolicy.getState();
+    }
+}
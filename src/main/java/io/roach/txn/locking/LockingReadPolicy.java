@@ -0,0 +1,246 @@
+package io.roach.txn.locking;
+
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.annotation.TransactionHints;
+
+/**
+ * Chooses between {@link ReadMode#OPTIMISTIC optimistic} and {@link ReadMode#LOCKING locking}
+ * reads per {@link TransactionBoundary transaction boundary} method, from the ratio of
+ * attempts aborted by transient errors over windows of attempts:
+ * <ul>
+ * <li>An optimistic method switches to locking reads when the abort ratio reaches the upper
+ * threshold, since queueing on row locks then beats abort storms.</li>
+ * <li>A locking method switches back when the abort ratio is at or below the lower threshold,
+ * and at least the dwell time has passed since the switch. Locking reads suppress the aborts
+ * that caused the switch, so the dwell time doubles (up to a maximum) each time a method
+ * returns to locking reads shortly after leaving them.</li>
+ * <li>A locking method also switches back once the dwell time has passed if the abort ratio did
+ * not drop below the ratio that caused the switch, for example with PostgreSQL at SERIALIZABLE
+ * where a locking read of a row updated concurrently still aborts. It then stays optimistic for
+ * the (doubled) dwell time before trying locking reads again.</li>
+ * </ul>
+ * Boundaries hinted {@link TransactionHints#readOnly() read-only} always read optimistically.
+ * The mode of the boundary attempt in progress is bound to the current thread, for
+ * repositories to pick the query variant. Method states are exposed at
+ * {@code /actuator/lockingreads}.
+ */
+@Component
+public class LockingReadPolicy {
+    private static final Logger logger = LoggerFactory.getLogger(LockingReadPolicy.class);
+
+    private static final ThreadLocal<ReadMode> currentMode = new ThreadLocal<>();
+
+    private final Map<Method, MethodState> states = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+
+    private final int windowAttempts;
+
+    private final double enterAbortRatio;
+
+    private final double exitAbortRatio;
+
+    private final long minDwellMillis;
+
+    private final long maxDwellMillis;
+
+    private LongSupplier nanoClock = System::nanoTime;
+
+    public LockingReadPolicy(@Value("${roach.txn.locking.enabled:false}") boolean enabled,
+                             @Value("${roach.txn.locking.window-attempts:100}") int windowAttempts,
+                             @Value("${roach.txn.locking.enter-abort-ratio:0.2}") double enterAbortRatio,
+                             @Value("${roach.txn.locking.exit-abort-ratio:0.05}") double exitAbortRatio,
+                             @Value("${roach.txn.locking.min-dwell-millis:10000}") long minDwellMillis,
+                             @Value("${roach.txn.locking.max-dwell-millis:300000}") long maxDwellMillis) {
+        this.enabled = enabled;
+        this.windowAttempts = Math.max(1, windowAttempts);
+        this.enterAbortRatio = enterAbortRatio;
+        this.exitAbortRatio = Math.min(exitAbortRatio, enterAbortRatio);
+        this.minDwellMillis = minDwellMillis;
+        this.maxDwellMillis = Math.max(minDwellMillis, maxDwellMillis);
+    }
+
+    void setNanoClock(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @param mode the read mode to bind to the current thread, or null to unbind
+     * @return the previously bound read mode, if any
+     */
+    public static ReadMode setCurrentMode(ReadMode mode) {
+        ReadMode previous = currentMode.get();
+        if (mode != null) {
+            currentMode.set(mode);
+        } else {
+            currentMode.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * @return true if the transaction boundary attempt in progress on this thread should use
+     * locking reads for rows it is about to update
+     */
+    public static boolean isLockingRead() {
+        return currentMode.get() == ReadMode.LOCKING;
+    }
+
+    public MethodState of(JoinPoint jp) {
+        MethodSignature signature = (MethodSignature) jp.getSignature();
+        MethodState state = states.get(signature.getMethod());
+        if (state == null) {
+            state = states.computeIfAbsent(signature.getMethod(), method -> {
+                Class<?> targetClass = jp.getTarget() != null ? jp.getTarget().getClass() : method.getDeclaringClass();
+                TransactionHints hints = AnnotationUtils.findAnnotation(
+                        AopUtils.getMostSpecificMethod(method, targetClass), TransactionHints.class);
+                return new MethodState(signature.toShortString(), enabled && (hints == null || !hints.readOnly()));
+            });
+        }
+        return state;
+    }
+
+    public Map<String, Object> getState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("enabled", enabled);
+        state.put("windowAttempts", windowAttempts);
+        state.put("enterAbortRatio", enterAbortRatio);
+        state.put("exitAbortRatio", exitAbortRatio);
+        state.put("minDwellMillis", minDwellMillis);
+        state.put("maxDwellMillis", maxDwellMillis);
+        Map<String, Object> methods = new TreeMap<>();
+        states.values().stream()
+                .filter(methodState -> methodState.adaptive)
+                .forEach(methodState -> methods.put(methodState.name, methodState.toMap()));
+        state.put("methods", methods);
+        return state;
+    }
+
+    /**
+     * Read mode and abort window of one boundary method, updated after every attempt.
+     */
+    public final class MethodState {
+        private final String name;
+
+        private final boolean adaptive;
+
+        // Read unsynchronized on the hot path, switches are rare
+        private volatile ReadMode mode = ReadMode.OPTIMISTIC;
+
+        // Remaining fields are guarded by this
+
+        private int attempts;
+
+        private int aborts;
+
+        private double lastAbortRatio;
+
+        private double enteredAbortRatio;
+
+        // Time after leaving locking reads before they may be tried again
+        private long blockedMillis;
+
+        private long switchedAtNanos;
+
+        private long exitedAtNanos;
+
+        private long dwellMillis = minDwellMillis;
+
+        private int switches;
+
+        private Instant switchedAt;
+
+        MethodState(String name, boolean adaptive) {
+            this.name = name;
+            this.adaptive = adaptive;
+        }
+
+        public ReadMode getMode() {
+            return mode;
+        }
+
+        /**
+         * @param aborted true if the attempt failed with a transient (retryable) error
+         */
+        public void recordAttempt(boolean aborted) {
+            if (!adaptive) {
+                return;
+            }
+            synchronized (this) {
+                attempts++;
+                if (aborted) {
+                    aborts++;
+                }
+                if (attempts < windowAttempts) {
+                    return;
+                }
+                lastAbortRatio = (double) aborts / attempts;
+                attempts = 0;
+                aborts = 0;
+
+                long now = nanoClock.getAsLong();
+                long sinceExitNanos = now - exitedAtNanos;
+                if (mode == ReadMode.OPTIMISTIC) {
+                    if (lastAbortRatio >= enterAbortRatio
+                            && (switches == 0 || sinceExitNanos >= TimeUnit.MILLISECONDS.toNanos(blockedMillis))) {
+                        // Back to locking reads within a dwell period after leaving (or being blocked),
+                        // contention persisted
+                        dwellMillis = switches > 0
+                                && sinceExitNanos < TimeUnit.MILLISECONDS.toNanos(blockedMillis + dwellMillis)
+                                ? Math.min(dwellMillis * 2, maxDwellMillis) : minDwellMillis;
+                        enteredAbortRatio = lastAbortRatio;
+                        switchTo(ReadMode.LOCKING, now, "abort ratio above " + enterAbortRatio);
+                    }
+                } else if (now - switchedAtNanos >= TimeUnit.MILLISECONDS.toNanos(dwellMillis)) {
+                    if (lastAbortRatio <= exitAbortRatio) {
+                        exitedAtNanos = now;
+                        blockedMillis = 0;
+                        switchTo(ReadMode.OPTIMISTIC, now, "abort ratio below " + exitAbortRatio);
+                    } else if (lastAbortRatio >= enteredAbortRatio) {
+                        blockedMillis = Math.min(dwellMillis * 2, maxDwellMillis);
+                        exitedAtNanos = now;
+                        switchTo(ReadMode.OPTIMISTIC, now, "no fewer aborts with locking reads");
+                    }
+                }
+            }
+        }
+
+        private void switchTo(ReadMode newMode, long now, String reason) {
+            logger.info("Switching {} from {} to {} reads ({}): abort ratio {}, dwell {} ms", name, mode, newMode,
+                    reason, String.format("%.3f", lastAbortRatio), dwellMillis);
+            mode = newMode;
+            switchedAtNanos = now;
+            switchedAt = Instant.now();
+            switches++;
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("mode", mode);
+            map.put("lastAbortRatio", Math.round(lastAbortRatio * 1000) / 1000.0);
+            map.put("windowProgress", attempts);
+            map.put("dwellMillis", dwellMillis);
+            map.put("switches", switches);
+            map.put("switchedAt", switchedAt != null ? switchedAt.toString() : null);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.roach.txn.locking;
+
+/**
+ * How repository queries read rows that the transaction is about to update.
+ */
+public enum ReadMode {
+    /**
+     * Plain reads, conflicts are detected at write or commit time and retried.
+     */
+    OPTIMISTIC,
+    /**
+     * Locking reads ({@code SELECT .. FOR UPDATE}), conflicting transactions queue on the
+     * row locks instead of aborting.
+     */
+    LOCKING
+}
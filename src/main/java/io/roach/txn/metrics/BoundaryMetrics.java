@@ -0,0 +1,144 @@
+package io.roach.txn.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters for a single transaction boundary method, tagged by method signature:
+ * <ul>
+ * <li>txn.boundary.calls - end-to-end latency per call, tagged by outcome and exception</li>
+ * <li>txn.boundary.attempts - attempts per call</li>
+ * <li>txn.boundary.backoff - total time spent in backoff per call</li>
+ * <li>txn.boundary.proceed - time spent in each attempt</li>
+ * <li>txn.boundary.commit - commit latency, tagged by commit status</li>
+ * <li>txn.boundary.savepoint.rollbacks - retries by rollback to savepoint within the same transaction</li>
+ * <li>txn.boundary.connection.wait - time queued in the transaction bulkhead per attempt</li>
+ * <li>txn.boundary.connection.acquire - time to get a connection from the pool</li>
+ * <li>txn.boundary.connection.usage - time from getting a connection until returned to the pool</li>
+ * </ul>
+ */
+public class BoundaryMetrics {
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99, 0.999};
+
+    private final MeterRegistry registry;
+
+    private final String method;
+
+    private final DistributionSummary attempts;
+
+    private final Timer backoff;
+
+    private final Timer proceed;
+
+    private final Timer committed;
+
+    private final Timer rolledBack;
+
+    private final Counter savepointRollbacks;
+
+    private final Timer connectionWait;
+
+    private final Timer connectionAcquire;
+
+    private final Timer connectionUsage;
+
+    private final Map<TransactionMetrics.Outcome, Map<Class<?>, Timer>> calls
+            = new EnumMap<>(TransactionMetrics.Outcome.class);
+
+    BoundaryMetrics(MeterRegistry registry, String method) {
+        this.registry = registry;
+        this.method = method;
+        this.attempts = DistributionSummary.builder("txn.boundary.attempts")
+                .description("Attempts per transaction boundary call")
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+        this.backoff = timer("txn.boundary.backoff", "Time spent in backoff per call");
+        this.proceed = timer("txn.boundary.proceed", "Time spent in each attempt");
+        this.committed = commitTimer("committed");
+        this.rolledBack = commitTimer("rolled_back");
+        this.savepointRollbacks = Counter.builder("txn.boundary.savepoint.rollbacks")
+                .description("Retries by rollback to savepoint")
+                .tag("method", method)
+                .register(registry);
+        this.connectionWait = timer("txn.boundary.connection.wait", "Time queued in the transaction bulkhead");
+        this.connectionAcquire = timer("txn.boundary.connection.acquire", "Time to get a pooled connection");
+        this.connectionUsage = timer("txn.boundary.connection.usage", "Time a pooled connection is held");
+        for (TransactionMetrics.Outcome outcome : TransactionMetrics.Outcome.values()) {
+            calls.put(outcome, new ConcurrentHashMap<>());
+        }
+    }
+
+    private Timer timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    private Timer commitTimer(String status) {
+        return Timer.builder("txn.boundary.commit")
+                .description("Transaction commit latency")
+                .tag("method", method)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    private Timer callTimer(TransactionMetrics.Outcome outcome, Class<?> exceptionType) {
+        Timer timer = calls.get(outcome).get(exceptionType);
+        if (timer != null) {
+            return timer;
+        }
+        return calls.get(outcome).computeIfAbsent(exceptionType, type -> Timer.builder("txn.boundary.calls")
+                .description("Transaction boundary call latency including retries")
+                .tag("method", method)
+                .tag("outcome", outcome.name().toLowerCase())
+                .tag("exception", type == Void.class ? "none" : type.getSimpleName())
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .register(registry));
+    }
+
+    public void recordProceed(long nanos) {
+        proceed.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCommit(long nanos, boolean success) {
+        (success ? committed : rolledBack).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordConnectionWait(long nanos) {
+        connectionWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordConnectionAcquire(long nanos) {
+        connectionAcquire.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordConnectionUsage(long nanos) {
+        connectionUsage.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSavepointRollback() {
+        savepointRollbacks.increment();
+    }
+
+    public void recordCall(long nanos, int numAttempts, long backoffNanos,
+                           TransactionMetrics.Outcome outcome, Throwable ex) {
+        attempts.record(numAttempts);
+        backoff.record(backoffNanos, TimeUnit.NANOSECONDS);
+        callTimer(outcome, ex != null ? ex.getClass() : Void.class).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,77 @@
+package io.roach.txn.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Registry of per-method {@link BoundaryMetrics} for transaction boundary join points.
+ * Meters are registered on first use and cached per method, so recording on the hot
+ * path does not involve any meter lookups.
+ * <p>
+ * The metrics of the boundary attempt in progress are also bound to the current thread,
+ * for recording connection acquisition and usage deeper down the call chain.
+ */
+@Component
+public class TransactionMetrics {
+    public enum Outcome {
+        SUCCESS,
+        NON_TRANSIENT_FAILURE,
+        EXHAUSTED
+    }
+
+    private static final ThreadLocal<BoundaryMetrics> currentBoundary = new ThreadLocal<>();
+
+    private final Map<Method, BoundaryMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * @param boundaryMetrics the metrics to bind to the current thread, or null to unbind
+     * @return the previously bound metrics, if any
+     */
+    public static BoundaryMetrics setCurrentBoundary(BoundaryMetrics boundaryMetrics) {
+        BoundaryMetrics previous = currentBoundary.get();
+        if (boundaryMetrics != null) {
+            currentBoundary.set(boundaryMetrics);
+        } else {
+            currentBoundary.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * @return the metrics of the transaction boundary attempt in progress on this thread, if any
+     */
+    public static BoundaryMetrics getCurrentBoundary() {
+        return currentBoundary.get();
+    }
+
+    public BoundaryMetrics of(JoinPoint jp) {
+        MethodSignature signature = (MethodSignature) jp.getSignature();
+        BoundaryMetrics boundaryMetrics = metrics.get(signature.getMethod());
+        if (boundaryMetrics == null) {
+            boundaryMetrics = metrics.computeIfAbsent(signature.getMethod(),
+                    method -> new BoundaryMetrics(meterRegistry, signatureOf(method)));
+        }
+        return boundaryMetrics;
+    }
+
+    // Qualified declaring type, name and parameter types, so that overloads get separate meters
+    private static String signatureOf(Method method) {
+        StringJoiner parameters = new StringJoiner(",", "(", ")");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            parameters.add(parameterType.getTypeName());
+        }
+        return method.getDeclaringClass().getName() + "." + method.getName() + parameters;
+    }
+}
@@ -0,0 +1,308 @@
+package io.roach.txn.pool;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.roach.txn.bulkhead.TransactionBulkhead;
+
+/**
+ * Adjusts the maximum size of the primary connection pool at runtime, within bounds,
+ * from the committed throughput and the abort (retry) ratio observed by the transaction
+ * boundaries. Works like a gradient concurrency limit by hill climbing:
+ * <ul>
+ * <li>When the abort ratio exceeds the limit, the pool shrinks multiplicatively since
+ * more concurrent transactions mostly add contention.</li>
+ * <li>When a resize was followed by a drop in throughput, it is reverted.</li>
+ * <li>When transactions queue for connections and the last increase paid off (or there
+ * was none), the pool grows by a step.</li>
+ * </ul>
+ * The {@link TransactionBulkhead} follows the pool size. Decisions are kept for
+ * {@code /actuator/poolsizing}.
+ */
+@Component
+@ConditionalOnProperty(name = "roach.txn.pool.sizing.enabled", havingValue = "true")
+public class PoolSizeController {
+    private static final Logger logger = LoggerFactory.getLogger(PoolSizeController.class);
+
+    private static final int MAX_DECISIONS = 32;
+
+    private final ScheduledExecutorService executor;
+
+    private final long intervalMillis;
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final int step;
+
+    private final double maxAbortRatio;
+
+    private final double tolerance;
+
+    private final long minCalls;
+
+    // Remaining fields are only touched by the controller thread, or guarded by this for reads
+
+    private final Deque<Decision> decisions = new ArrayDeque<>();
+
+    private HikariDataSource hikariDataSource;
+
+    private Sample lastSample;
+
+    private double lastThroughput;
+
+    private int lastChange;
+
+    private LongSupplier nanoClock = System::nanoTime;
+
+    // Resolved once started, eagerly injecting the data source may form a cycle with the routing data source
+    @Autowired
+    private ObjectProvider<DataSource> dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionBulkhead transactionBulkhead;
+
+    public PoolSizeController(@Value("${roach.txn.pool.sizing.interval-millis:5000}") long intervalMillis,
+                              @Value("${roach.txn.pool.sizing.min-size:4}") int minSize,
+                              @Value("${roach.txn.pool.sizing.max-size:64}") int maxSize,
+                              @Value("${roach.txn.pool.sizing.step:2}") int step,
+                              @Value("${roach.txn.pool.sizing.max-abort-ratio:0.1}") double maxAbortRatio,
+                              @Value("${roach.txn.pool.sizing.tolerance:0.05}") double tolerance,
+                              @Value("${roach.txn.pool.sizing.min-calls:50}") long minCalls) {
+        this.intervalMillis = intervalMillis;
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.step = Math.max(1, step);
+        this.maxAbortRatio = maxAbortRatio;
+        this.tolerance = tolerance;
+        this.minCalls = minCalls;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "txn-pool-sizing");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() throws SQLException {
+        // With the routing profile this resolves to the default (write) pool
+        hikariDataSource = dataSource.getObject().unwrap(HikariDataSource.class);
+        lastSample = sample();
+        executor.scheduleWithFixedDelay(this::adjust, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    void setNanoClock(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    void adjust() {
+        try {
+            Sample sample = sample();
+            Sample delta = sample.minus(lastSample);
+            lastSample = sample;
+
+            double seconds = delta.nanos / 1e9;
+            double throughput = delta.successfulCalls / seconds;
+            double abortRatio = delta.attempts > 0 ? (double) (delta.attempts - delta.calls) / delta.attempts : 0;
+            double gain = lastThroughput > 0 ? (throughput - lastThroughput) / lastThroughput : 0;
+
+            HikariPoolMXBean pool = hikariDataSource.getHikariPoolMXBean();
+            boolean saturated = transactionBulkhead.getQueueLength() > 0
+                    || (pool != null && pool.getThreadsAwaitingConnection() > 0);
+            int size = hikariDataSource.getMaximumPoolSize();
+
+            int newSize;
+            String reason;
+            if (delta.calls < minCalls) {
+                newSize = size;
+                reason = "idle";
+            } else if (abortRatio > maxAbortRatio) {
+                newSize = size - Math.max(step, size / 4);
+                reason = "abort ratio above " + maxAbortRatio;
+            } else if (lastChange != 0 && gain < -tolerance) {
+                newSize = size - lastChange;
+                reason = "throughput dropped after resize";
+            } else if (saturated && (lastChange <= 0 || gain > tolerance)) {
+                newSize = size + step;
+                reason = "saturated";
+            } else {
+                newSize = size;
+                reason = saturated ? "saturated, no gain from last increase" : "not saturated";
+            }
+            newSize = Math.max(minSize, Math.min(maxSize, newSize));
+
+            if (newSize != size) {
+                resize(newSize);
+            }
+            // An idle interval says nothing about the last resize, keep comparing against it
+            if (delta.calls >= minCalls) {
+                lastChange = newSize - size;
+                lastThroughput = throughput;
+            }
+            record(new Decision(Instant.now(), size, newSize, throughput, abortRatio, saturated, reason));
+        } catch (RuntimeException e) {
+            logger.warn("Pool sizing failed", e);
+        }
+    }
+
+    private void resize(int size) {
+        if (hikariDataSource.getMinimumIdle() > size) {
+            hikariDataSource.setMinimumIdle(size);
+        }
+        hikariDataSource.setMaximumPoolSize(size);
+        transactionBulkhead.setMaxConcurrent(size);
+    }
+
+    private synchronized void record(Decision decision) {
+        if (decision.from != decision.to) {
+            logger.info("Pool size {} -> {} ({}): {} tx/s, abort ratio {}", decision.from, decision.to,
+                    decision.reason, String.format("%.1f", decision.throughput),
+                    String.format("%.3f", decision.abortRatio));
+        }
+        decisions.addFirst(decision);
+        if (decisions.size() > MAX_DECISIONS) {
+            decisions.removeLast();
+        }
+    }
+
+    private Sample sample() {
+        Sample sample = new Sample(nanoClock.getAsLong());
+        for (Timer timer : meterRegistry.find("txn.boundary.calls").tag("outcome", "success").timers()) {
+            sample.successfulCalls += timer.count();
+        }
+        for (DistributionSummary summary : meterRegistry.find("txn.boundary.attempts").summaries()) {
+            sample.calls += summary.count();
+            sample.attempts += (long) summary.totalAmount();
+        }
+        return sample;
+    }
+
+    public synchronized Map<String, Object> getState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("enabled", true);
+        if (hikariDataSource == null) {
+            return state; // Not started
+        }
+        state.put("intervalMillis", intervalMillis);
+        state.put("minSize", minSize);
+        state.put("maxSize", maxSize);
+        state.put("step", step);
+        state.put("maxAbortRatio", maxAbortRatio);
+        state.put("tolerance", tolerance);
+        state.put("maximumPoolSize", hikariDataSource.getMaximumPoolSize());
+
+        HikariPoolMXBean pool = hikariDataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            Map<String, Object> connections = new LinkedHashMap<>();
+            connections.put("active", pool.getActiveConnections());
+            connections.put("idle", pool.getIdleConnections());
+            connections.put("total", pool.getTotalConnections());
+            connections.put("awaiting", pool.getThreadsAwaitingConnection());
+            state.put("connections", connections);
+        }
+
+        List<Map<String, Object>> history = new ArrayList<>();
+        decisions.forEach(decision -> history.add(decision.toMap()));
+        state.put("decisions", history);
+        return state;
+    }
+
+    private static class Sample {
+        final long nanos;
+
+        long successfulCalls;
+
+        long calls;
+
+        long attempts;
+
+        Sample(long nanos) {
+            this.nanos = nanos;
+        }
+
+        Sample minus(Sample other) {
+            Sample delta = new Sample(nanos - other.nanos);
+            delta.successfulCalls = successfulCalls - other.successfulCalls;
+            delta.calls = calls - other.calls;
+            delta.attempts = attempts - other.attempts;
+            return delta;
+        }
+    }
+
+    private static class Decision {
+        final Instant time;
+
+        final int from;
+
+        final int to;
+
+        final double throughput;
+
+        final double abortRatio;
+
+        final boolean saturated;
+
+        final String reason;
+
+        Decision(Instant time, int from, int to, double throughput, double abortRatio, boolean saturated,
+                 String reason) {
+            this.time = time;
+            this.from = from;
+            this.to = to;
+            this.throughput = throughput;
+            this.abortRatio = abortRatio;
+            this.saturated = saturated;
+            this.reason = reason;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("time", time.toString());
+            map.put("from", from);
+            map.put("to", to);
+            map.put("throughput", Math.round(throughput * 10) / 10.0);
+            map.put("abortRatio", Math.round(abortRatio * 1000) / 1000.0);
+            map.put("saturated", saturated);
+            map.put("reason", reason);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.roach.txn.pool;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the pool sizing controller state and recent decisions at {@code /actuator/poolsizing}.
+ */
+@Component
+@Endpoint(id = "poolsizing")
+public class PoolSizingEndpoint {
+    @Autowired
+    private ObjectProvider<PoolSizeController> poolSizeControllerProvider;
+
+    @ReadOperation
+    public Map<String, Object> poolSizing() {
+        PoolSizeController poolSizeController = poolSizeControllerProvider.getIfAvailable();
+        return poolSizeController != null
+                ? poolSizeController.getState()
+                : Collections.singletonMap("enabled", false);
+    }
+}
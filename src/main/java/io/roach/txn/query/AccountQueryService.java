@@ -0,0 +1,68 @@
+package io.roach.txn.query;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.annotation.TransactionHints;
+import io.roach.txn.domain.AccountEntity;
+import io.roach.txn.domain.AccountSummary;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+import io.roach.txn.repository.AccountRepository;
+import io.roach.txn.repository.ShardedAccountRepository;
+
+/**
+ * Follower reads of accounts, returning immutable snapshots rather than web models so
+ * that results can be served from the historical read cache with links built per request.
+ * With balance shards, each account row includes the balance of its other shards.
+ */
+@Service
+public class AccountQueryService {
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired(required = false)
+    private ShardedAccountRepository shardedAccountRepository;
+
+    @TransactionBoundary
+    @TransactionHints(readOnly = true, followerRead = true)
+    public Page<AccountSummary> findAll(Pageable pageable) {
+        Page<AccountEntity> page = accountRepository.findAll(pageable);
+        return page.map(withShards(page.getContent()));
+    }
+
+    /**
+     * Keyset (seek) pagination by id, without count queries or OFFSET scans.
+     */
+    @TransactionBoundary
+    @TransactionHints(readOnly = true, followerRead = true)
+    public Slice<AccountSummary> findAfter(Long lastId, int size) {
+        Slice<AccountEntity> slice = accountRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, size));
+        return slice.map(withShards(slice.getContent()));
+    }
+
+    private Function<AccountEntity, AccountSummary> withShards(List<AccountEntity> accounts) {
+        if (shardedAccountRepository == null || accounts.isEmpty()) {
+            return AccountSummary::of;
+        }
+        Map<String, Map<AccountType, Money>> shardBalances = shardedAccountRepository.getShardBalances(
+                accounts.stream().map(AccountEntity::getName).collect(Collectors.toSet()));
+        return entity -> {
+            Money shardBalance = shardBalances.getOrDefault(entity.getName(), Collections.emptyMap())
+                    .getOrDefault(entity.getType(), Money.ZERO);
+            return new AccountSummary(entity.getId(), entity.getName(), entity.getType(),
+                    entity.getBalance().plus(shardBalance));
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package io.roach.txn.repository;
+
+import java.util.Collection;
+import java.util.Map;
+
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+
+/**
+ * Balance queries of the {@link JpaAccountRepository} built at runtime, since they depend
+ * on whether the ledger is enabled and on the read locking of the current boundary.
+ */
+public interface AccountBalanceQueries {
+    Money getBalance(String name);
+
+    Map<String, Money> getBalances(Collection<String> names);
+
+    int updateBalanceConditionally(String name, AccountType type, Money amount);
+
+    /**
+     * Deletes all ledger entries, if the ledger is enabled. The table only exists with the 'ledger' profile.
+     */
+    void deleteLedgerEntries();
+}
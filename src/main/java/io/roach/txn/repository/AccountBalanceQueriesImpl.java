@@ -0,0 +1,81 @@
+package io.roach.txn.repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Value;
+
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+
+/**
+ * Spring Data fragment implementing the {@link AccountBalanceQueries} with native SQL, so
+ * that locking reads lock the account rows in the same statement (see {@link AccountRows}).
+ * Pending ledger entries are only added if the ledger is enabled.
+ */
+public class AccountBalanceQueriesImpl implements AccountBalanceQueries {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${roach.txn.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    @Override
+    public Money getBalance(String name) {
+        BigDecimal balance = (BigDecimal) entityManager.createNativeQuery("SELECT sum(balance)" + plusPending()
+                + " FROM " + AccountRows.accounts("name = :name"))
+                .setParameter("name", name)
+                .getSingleResult();
+        return balance != null ? Money.of(balance) : null;
+    }
+
+    @Override
+    public Map<String, Money> getBalances(Collection<String> names) {
+        Map<String, Money> balances = new HashMap<>();
+        rows("SELECT name, sum(balance) FROM " + AccountRows.accounts("name IN (:names)") + " GROUP BY name", names)
+                .forEach(row -> balances.put((String) row[0], Money.of((BigDecimal) row[1])));
+        if (!ledgerEnabled) {
+            return balances;
+        }
+        rows("SELECT name, sum(amount) FROM account_ledger WHERE name IN (:names) GROUP BY name", names)
+                .forEach(row -> balances.computeIfPresent((String) row[0],
+                        (name, balance) -> balance.plus(Money.of((BigDecimal) row[1]))));
+        return balances;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> rows(String sql, Collection<String> names) {
+        return entityManager.createNativeQuery(sql)
+                .setParameter("names", names)
+                .getResultList();
+    }
+
+    @Override
+    public int updateBalanceConditionally(String name, AccountType type, Money amount) {
+        return entityManager.createNativeQuery("UPDATE account SET balance = balance + :amount "
+                + "WHERE name = :name AND type = :type "
+                + "AND (SELECT sum(balance) FROM " + AccountRows.accounts("name = :name") + ")" + plusPending()
+                + " + :amount >= 0")
+                .setParameter("name", name)
+                .setParameter("type", type.name())
+                .setParameter("amount", amount.toBigDecimal())
+                .executeUpdate();
+    }
+
+    @Override
+    public void deleteLedgerEntries() {
+        if (ledgerEnabled) {
+            entityManager.createNativeQuery("DELETE FROM account_ledger").executeUpdate();
+        }
+    }
+
+    private String plusPending() {
+        return ledgerEnabled ? " + " + LedgerRepository.PENDING_AMOUNT : "";
+    }
+}
@@ -0,0 +1,41 @@
+package io.roach.txn.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import io.roach.txn.annotation.TransactionService;
+
+/**
+ * Forward-only cursor over all accounts, for exports in constant memory. Rows are fetched
+ * from the database in chunks of the given fetch size (requires a transaction with the
+ * PostgreSQL driver). With balance shards, each account row includes the balance of its
+ * other shards.
+ */
+@Repository
+@TransactionService
+public class AccountExportRepository {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${roach.txn.sharding.enabled:false}")
+    private boolean sharding;
+
+    public void streamAll(int fetchSize, RowCallbackHandler rowCallbackHandler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sharding
+                            ? "SELECT a.id, a.name, a.type, a.balance + coalesce((SELECT sum(s.balance) "
+                            + "FROM account_shard s WHERE s.name = a.name AND s.type = a.type), 0) AS balance "
+                            + "FROM account a ORDER BY a.id"
+                            : "SELECT id, name, type, balance FROM account ORDER BY id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, rowCallbackHandler);
+    }
+}
@@ -1,31 +1,56 @@
 package io.roach.txn.repository;
 
-import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
 
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.stereotype.Repository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
-import io.roach.txn.annotation.TransactionService;
 import io.roach.txn.domain.AccountEntity;
 import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
 
-@Repository
-@TransactionService
-public interface AccountRepository extends JpaRepository<AccountEntity, Long>,
-        JpaSpecificationExecutor<AccountEntity> {
+/**
+ * Account data access, implemented by {@link JpaAccountRepository} (default) and
+ * {@link JdbcAccountRepository} ('jdbc' profile).
+ * <p>
+ * Balances and amounts are {@link Money}, the numeric column is mapped at the SQL or
+ * JPA converter boundary. Balances include the ledger entries not yet folded into the
+ * account rows, see {@link LedgerRepository}.
+ */
+public interface AccountRepository {
+    Page<AccountEntity> findAll(Pageable pageable);
 
-    @Query(value = "select sum(a.balance) from AccountEntity a where a.name=?1")
-//    @Lock(LockModeType.PESSIMISTIC_READ)
-    BigDecimal getBalance(String name);
+    AccountEntity getOne(Long id);
 
-    @Modifying
-    @Query("update AccountEntity a set a.balance = a.balance + ?3 where a.name = ?1 and a.type=?2")
-    void updateBalance(String name, AccountType type, BigDecimal balance);
+    /**
+     * Keyset pagination, the slice is fetched with one extra row to detect a next page
+     * and without a count query.
+     */
+    Slice<AccountEntity> findByIdGreaterThanOrderByIdAsc(Long lastId, Pageable pageable);
 
-    @Modifying
-    @Query("update AccountEntity a set a.balance = ?1")
-    void resetBalances(BigDecimal balance);
+    /**
+     * @return total balance for the name, or null if there are no accounts
+     */
+    Money getBalance(String name);
+
+    /**
+     * @return total balance by name
+     */
+    Map<String, Money> getBalances(Collection<String> names);
+
+    /**
+     * @return number of updated rows, 0 if there is no account of the given type
+     */
+    int updateBalance(String name, AccountType type, Money amount);
+
+    /**
+     * Updates the balance only if the total balance for the name stays non-negative.
+     *
+     * @return number of updated rows, 0 if insufficient funds (or no such account)
+     */
+    int updateBalanceConditionally(String name, AccountType type, Money amount);
+
+    void resetBalances(Money balance);
 }
@@ -0,0 +1,23 @@
+package io.roach.txn.repository;
+
+import io.roach.txn.locking.LockingReadPolicy;
+
+/**
+ * SQL for reading the account rows ahead of an update, shared by the repositories so that
+ * all locking reads lock in the same order.
+ */
+final class AccountRows {
+    private AccountRows() {
+    }
+
+    /**
+     * @return the account rows (name and balance) matching the predicate, locked in id order
+     * if the current boundary uses locking reads
+     */
+    static String accounts(String predicate) {
+        if (LockingReadPolicy.isLockingRead()) {
+            return "(SELECT name, balance FROM account WHERE " + predicate + " ORDER BY id FOR UPDATE) AS a";
+        }
+        return "account WHERE " + predicate;
+    }
+}
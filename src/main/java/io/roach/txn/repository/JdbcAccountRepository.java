@@ -0,0 +1,174 @@
+package io.roach.txn.repository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import io.roach.txn.annotation.TransactionService;
+import io.roach.txn.domain.AccountEntity;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+
+/**
+ * Plain JDBC implementation of the {@link AccountRepository}, bypassing the JPA
+ * persistence context. Entities are detached value objects mapped from result sets.
+ */
+@Repository
+@TransactionService
+@Profile("jdbc")
+public class JdbcAccountRepository implements AccountRepository {
+    private static final RowMapper<AccountEntity> ACCOUNT_MAPPER = (rs, rowNum) -> {
+        AccountEntity entity = new AccountEntity();
+        entity.setId(rs.getLong("id"));
+        entity.setName(rs.getString("name"));
+        entity.setType(AccountType.valueOf(rs.getString("type")));
+        entity.setBalance(Money.ofCents(rs.getLong("balance_cents")));
+        return entity;
+    };
+
+    private static final String ACCOUNT_COLUMNS = "id, name, type, CAST(balance * 100 AS BIGINT) AS balance_cents";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Value("${roach.txn.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    @Override
+    public Page<AccountEntity> findAll(Pageable pageable) {
+        List<AccountEntity> content = jdbcTemplate.query(
+                "SELECT " + ACCOUNT_COLUMNS + " FROM account" + orderBy(pageable.getSort())
+                        + " LIMIT :limit OFFSET :offset",
+                new MapSqlParameterSource()
+                        .addValue("limit", pageable.getPageSize())
+                        .addValue("offset", pageable.getOffset()),
+                ACCOUNT_MAPPER);
+        Long total = jdbcTemplate.getJdbcOperations().queryForObject("SELECT count(*) FROM account", Long.class);
+        return new PageImpl<>(content, pageable, total != null ? total : 0);
+    }
+
+    private static String orderBy(Sort sort) {
+        if (sort.isUnsorted()) {
+            return "";
+        }
+        return sort.stream()
+                .map(order -> column(order.getProperty()) + " " + order.getDirection().name())
+                .collect(Collectors.joining(", ", " ORDER BY ", ""));
+    }
+
+    private static String column(String property) {
+        switch (property) {
+            case "id":
+            case "name":
+            case "type":
+            case "balance":
+                return property;
+            default:
+                throw new IllegalArgumentException("Unknown sort property: " + property);
+        }
+    }
+
+    @Override
+    public AccountEntity getOne(Long id) {
+        return jdbcTemplate.queryForObject("SELECT " + ACCOUNT_COLUMNS + " FROM account WHERE id = :id",
+                new MapSqlParameterSource("id", id), ACCOUNT_MAPPER);
+    }
+
+    @Override
+    public Slice<AccountEntity> findByIdGreaterThanOrderByIdAsc(Long lastId, Pageable pageable) {
+        List<AccountEntity> content = jdbcTemplate.query(
+                "SELECT " + ACCOUNT_COLUMNS + " FROM account WHERE id > :lastId ORDER BY id LIMIT :limit",
+                new MapSqlParameterSource()
+                        .addValue("lastId", lastId)
+                        .addValue("limit", pageable.getPageSize() + 1),
+                ACCOUNT_MAPPER);
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    @Override
+    public Money getBalance(String name) {
+        Long cents = jdbcTemplate.queryForObject(
+                "SELECT CAST((sum(balance)" + plusPending() + ") * 100 AS BIGINT) FROM "
+                        + AccountRows.accounts("name = :name"),
+                new MapSqlParameterSource("name", name), Long.class);
+        return cents != null ? Money.ofCents(cents) : null;
+    }
+
+    @Override
+    public Map<String, Money> getBalances(Collection<String> names) {
+        Map<String, Money> balances = new HashMap<>();
+        jdbcTemplate.query("SELECT name, CAST(sum(balance) * 100 AS BIGINT) FROM "
+                        + AccountRows.accounts("name IN (:names)") + " GROUP BY name",
+                new MapSqlParameterSource("names", names),
+                rs -> {
+                    balances.put(rs.getString(1), Money.ofCents(rs.getLong(2)));
+                });
+        if (!ledgerEnabled) {
+            return balances;
+        }
+        jdbcTemplate.query("SELECT name, CAST(sum(amount) * 100 AS BIGINT) FROM account_ledger "
+                        + "WHERE name IN (:names) GROUP BY name",
+                new MapSqlParameterSource("names", names),
+                rs -> {
+                    Money pending = Money.ofCents(rs.getLong(2));
+                    balances.computeIfPresent(rs.getString(1), (name, balance) -> balance.plus(pending));
+                });
+        return balances;
+    }
+
+    /**
+     * @return the pending ledger entries for the {@code :name} parameter to add to its
+     * balance, if the ledger is enabled
+     */
+    private String plusPending() {
+        return ledgerEnabled ? " + " + LedgerRepository.PENDING_AMOUNT : "";
+    }
+
+    @Override
+    public int updateBalance(String name, AccountType type, Money amount) {
+        return jdbcTemplate.update("UPDATE account SET balance = balance + CAST(:cents AS DECIMAL) / 100 "
+                        + "WHERE name = :name AND type = :type",
+                new MapSqlParameterSource()
+                        .addValue("name", name)
+                        .addValue("type", type.name())
+                        .addValue("cents", amount.getCents()));
+    }
+
+    @Override
+    public int updateBalanceConditionally(String name, AccountType type, Money amount) {
+        return jdbcTemplate.update("UPDATE account SET balance = balance + CAST(:cents AS DECIMAL) / 100 "
+                        + "WHERE name = :name AND type = :type "
+                        + "AND (SELECT sum(balance) FROM " + AccountRows.accounts("name = :name") + ")" + plusPending()
+                        + " + CAST(:cents AS DECIMAL) / 100 >= 0",
+                new MapSqlParameterSource()
+                        .addValue("name", name)
+                        .addValue("type", type.name())
+                        .addValue("cents", amount.getCents()));
+    }
+
+    @Override
+    public void resetBalances(Money balance) {
+        if (ledgerEnabled) {
+            jdbcTemplate.getJdbcOperations().update("DELETE FROM account_ledger");
+        }
+        jdbcTemplate.update("UPDATE account SET balance = CAST(:cents AS DECIMAL) / 100",
+                new MapSqlParameterSource("cents", balance.getCents()));
+    }
+}
@@ -0,0 +1,51 @@
+package io.roach.txn.repository;
+
+import java.math.BigDecimal;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import io.roach.txn.annotation.TransactionService;
+import io.roach.txn.domain.AccountEntity;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+
+/**
+ * Spring Data JPA implementation of the {@link AccountRepository}, active unless the
+ * 'jdbc' profile is. Balance reads and checks are in the {@link AccountBalanceQueriesImpl}
+ * fragment.
+ */
+@Repository
+@TransactionService
+@Profile("!jdbc")
+public interface JpaAccountRepository extends JpaRepository<AccountEntity, Long>,
+        JpaSpecificationExecutor<AccountEntity>, AccountRepository, AccountBalanceQueries {
+
+    @Override
+    Slice<AccountEntity> findByIdGreaterThanOrderByIdAsc(Long lastId, Pageable pageable);
+
+    @Override
+    default int updateBalance(String name, AccountType type, Money amount) {
+        return addToBalance(name, type, amount.toBigDecimal());
+    }
+
+    @Modifying
+    @Query("update AccountEntity a set a.balance = a.balance + ?3 where a.name = ?1 and a.type = ?2")
+    int addToBalance(String name, AccountType type, BigDecimal amount);
+
+    @Override
+    default void resetBalances(Money balance) {
+        deleteLedgerEntries();
+        resetAccountBalances(balance.toBigDecimal());
+    }
+
+    @Modifying
+    @Query("update AccountEntity a set a.balance = ?1")
+    void resetAccountBalances(BigDecimal balance);
+}
@@ -0,0 +1,99 @@
+package io.roach.txn.repository;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import io.roach.txn.annotation.TransactionService;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.LedgerEntryEntity;
+import io.roach.txn.domain.Money;
+
+/**
+ * Append-only ledger of transfers. The account rows act as the checkpoint and the balance
+ * is the checkpoint plus the entries not yet folded into it, which the compactor keeps to
+ * a short tail. The account repositories only add the pending entries to balances if the
+ * ledger is enabled ('ledger' profile).
+ */
+@Repository
+@TransactionService
+public class LedgerRepository {
+    /**
+     * Sum of the entries not yet folded for the {@code :name} parameter.
+     */
+    static final String PENDING_AMOUNT = "(SELECT coalesce(sum(amount), 0) FROM account_ledger WHERE name = :name)";
+
+    private static final RowMapper<LedgerEntryEntity> ENTRY_MAPPER = (rs, rowNum) -> {
+        LedgerEntryEntity entry = new LedgerEntryEntity();
+        entry.setId(rs.getLong("id"));
+        entry.setName(rs.getString("name"));
+        entry.setType(AccountType.valueOf(rs.getString("type")));
+        entry.setAmount(Money.ofCents(rs.getLong("amount_cents")));
+        return entry;
+    };
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Appends an entry if the account exists. Only the account row is read, so concurrent
+     * appends never conflict.
+     *
+     * @return number of entries appended, 0 if no such account
+     */
+    public int append(String name, AccountType type, Money amount) {
+        return jdbcTemplate.update("INSERT INTO account_ledger (name, type, amount) "
+                        + "SELECT :name, :type, CAST(:cents AS DECIMAL) / 100 "
+                        + "WHERE EXISTS (SELECT 1 FROM account WHERE name = :name AND type = :type)",
+                entryParameters(name, type, amount));
+    }
+
+    /**
+     * Appends an entry only if the balance (checkpoint plus pending entries) stays non-negative.
+     * With locking reads, the checkpoint rows are locked so that concurrent withdrawals queue.
+     *
+     * @return number of entries appended, 0 if insufficient funds (or no such account)
+     */
+    public int appendConditionally(String name, AccountType type, Money amount) {
+        return jdbcTemplate.update("INSERT INTO account_ledger (name, type, amount) "
+                        + "SELECT :name, :type, CAST(:cents AS DECIMAL) / 100 "
+                        + "WHERE EXISTS (SELECT 1 FROM account WHERE name = :name AND type = :type) "
+                        + "AND (SELECT sum(balance) FROM " + AccountRows.accounts("name = :name") + ") "
+                        + "+ " + PENDING_AMOUNT + " "
+                        + "+ CAST(:cents AS DECIMAL) / 100 >= 0",
+                entryParameters(name, type, amount));
+    }
+
+    /**
+     * @return sum of the entries not yet folded for the name, zero if none
+     */
+    public Money getPendingAmount(String name) {
+        Long cents = jdbcTemplate.queryForObject("SELECT CAST(" + PENDING_AMOUNT + " * 100 AS BIGINT)",
+                new MapSqlParameterSource("name", name), Long.class);
+        return cents != null ? Money.ofCents(cents) : Money.ZERO;
+    }
+
+    /**
+     * Removes the oldest entries for folding into the account rows. Entries of accounts that
+     * no longer exist are kept rather than dropped.
+     */
+    public List<LedgerEntryEntity> removeOldest(int limit) {
+        return jdbcTemplate.query("DELETE FROM account_ledger WHERE id IN "
+                        + "(SELECT l.id FROM account_ledger AS l WHERE EXISTS "
+                        + "(SELECT 1 FROM account AS a WHERE a.name = l.name AND a.type = l.type) "
+                        + "ORDER BY l.id LIMIT :limit) "
+                        + "RETURNING id, name, type, CAST(amount * 100 AS BIGINT) AS amount_cents",
+                new MapSqlParameterSource("limit", limit), ENTRY_MAPPER);
+    }
+
+    private static MapSqlParameterSource entryParameters(String name, AccountType type, Money amount) {
+        return new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("type", type.name())
+                .addValue("cents", amount.getCents());
+    }
+}
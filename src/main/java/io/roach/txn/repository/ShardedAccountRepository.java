@@ -0,0 +1,146 @@
+package io.roach.txn.repository;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import io.roach.txn.annotation.TransactionService;
+import io.roach.txn.domain.AccountShard;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+
+/**
+ * Balance updates against single shards of an account. Shard 0 is the account row, the
+ * only one the other transfer paths update, shards {@code 1..N-1} are rows of the
+ * {@code account_shard} table created on demand with a zero balance.
+ */
+@Repository
+@TransactionService
+@ConditionalOnProperty(name = "roach.txn.sharding.enabled", havingValue = "true")
+public class ShardedAccountRepository {
+    private static final RowMapper<AccountShard> SHARD_MAPPER = (rs, rowNum) -> new AccountShard(
+            rs.getString("name"),
+            AccountType.valueOf(rs.getString("type")),
+            rs.getInt("shard"),
+            Money.ofCents(rs.getLong("balance_cents")));
+
+    private static final List<String> ALL_TYPES = Arrays.stream(AccountType.values())
+            .map(Enum::name)
+            .collect(Collectors.toList());
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Value("${roach.txn.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    /**
+     * @return number of rows updated, 0 if the shard does not exist
+     */
+    public int addToShard(String name, AccountType type, int shard, Money amount) {
+        return jdbcTemplate.update("UPDATE " + table(shard) + " SET balance = balance + CAST(:cents AS DECIMAL) / 100 "
+                        + "WHERE name = :name AND type = :type" + shardPredicate(shard),
+                shardParameters(name, type, shard, amount));
+    }
+
+    /**
+     * Adds the amount unless the sum over all types of the shard would become negative.
+     * Only the rows of the shard are read, so that withdrawals from different shards don't
+     * conflict. No shard ever goes negative, since the other transfer paths check their
+     * funds against shard 0 alone, and so neither does the account. Pending ledger entries
+     * (if the ledger is enabled) count towards shard 0, where they are folded.
+     *
+     * @return number of rows updated, 0 if the shard does not exist or cannot cover the amount
+     */
+    public int addToShardConditionally(String name, AccountType type, int shard, Money amount) {
+        String table = table(shard);
+        String pending = shard == 0 && ledgerEnabled ? "+ " + LedgerRepository.PENDING_AMOUNT + " " : "";
+        return jdbcTemplate.update("UPDATE " + table + " SET balance = balance + CAST(:cents AS DECIMAL) / 100 "
+                        + "WHERE name = :name AND type = :type" + shardPredicate(shard) + " "
+                        + "AND (SELECT sum(balance) FROM " + table + " "
+                        + "WHERE name = :name AND type IN (:types)" + shardPredicate(shard) + ") "
+                        + pending
+                        + "+ CAST(:cents AS DECIMAL) / 100 >= 0",
+                shardParameters(name, type, shard, amount));
+    }
+
+    /**
+     * Creates the missing shards {@code 1..shards-1} of all types of the account, with a zero balance.
+     */
+    public int createShards(String name, int shards) {
+        return jdbcTemplate.update("INSERT INTO account_shard (name, type, shard, balance) "
+                        + "SELECT a.name, a.type, s, 0 FROM account a, generate_series(1, :last) s "
+                        + "WHERE a.name = :name "
+                        + "ON CONFLICT (name, type, shard) DO NOTHING",
+                new MapSqlParameterSource()
+                        .addValue("name", name)
+                        .addValue("last", shards - 1));
+    }
+
+    /**
+     * @return all shards of the account, including the account rows as shard 0
+     */
+    public List<AccountShard> findShards(String name) {
+        return jdbcTemplate.query("SELECT name, type, 0 AS shard, CAST(balance * 100 AS BIGINT) AS balance_cents "
+                        + "FROM account WHERE name = :name "
+                        + "UNION ALL "
+                        + "SELECT name, type, shard, CAST(balance * 100 AS BIGINT) AS balance_cents "
+                        + "FROM account_shard WHERE name = :name "
+                        + "ORDER BY shard, type",
+                new MapSqlParameterSource("name", name), SHARD_MAPPER);
+    }
+
+    /**
+     * @return sum of shards {@code 1..N-1} by name and type, absent if the account has none
+     */
+    public Map<String, Map<AccountType, Money>> getShardBalances(Collection<String> names) {
+        Map<String, Map<AccountType, Money>> balances = new HashMap<>();
+        jdbcTemplate.query("SELECT name, type, CAST(sum(balance) * 100 AS BIGINT) FROM account_shard "
+                        + "WHERE name IN (:names) GROUP BY name, type",
+                new MapSqlParameterSource("names", names),
+                rs -> {
+                    balances.computeIfAbsent(rs.getString(1), name -> new EnumMap<>(AccountType.class))
+                            .put(AccountType.valueOf(rs.getString(2)), Money.ofCents(rs.getLong(3)));
+                });
+        return balances;
+    }
+
+    public void setBalance(String name, AccountType type, int shard, Money balance) {
+        jdbcTemplate.update("UPDATE " + table(shard) + " SET balance = CAST(:cents AS DECIMAL) / 100 "
+                        + "WHERE name = :name AND type = :type" + shardPredicate(shard),
+                shardParameters(name, type, shard, balance));
+    }
+
+    public void resetShards() {
+        jdbcTemplate.getJdbcOperations().update("DELETE FROM account_shard");
+    }
+
+    private static String table(int shard) {
+        return shard == 0 ? "account" : "account_shard";
+    }
+
+    private static String shardPredicate(int shard) {
+        return shard == 0 ? "" : " AND shard = :shard";
+    }
+
+    private static MapSqlParameterSource shardParameters(String name, AccountType type, int shard, Money amount) {
+        return new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("type", type.name())
+                .addValue("types", ALL_TYPES)
+                .addValue("shard", shard)
+                .addValue("cents", amount.getCents());
+    }
+}
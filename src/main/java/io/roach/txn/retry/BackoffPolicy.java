@@ -0,0 +1,17 @@
+package io.roach.txn.retry;
+
+/**
+ * Strategy for computing the delay between transaction retry attempts.
+ * <p>
+ * Implementations must be stateless and thread safe. Any state needed between
+ * attempts (such as the previous delay for decorrelated jitter) is passed in by
+ * the caller, which keeps the policy itself shareable across all join points.
+ */
+public interface BackoffPolicy {
+    /**
+     * @param attempt the attempt that just failed, starting at 1
+     * @param previousMillis the delay used before the failed attempt, or 0 for the first attempt
+     * @return delay in milliseconds before the next attempt, or a negative value for no delay
+     */
+    long nextBackoffMillis(int attempt, long previousMillis);
+}
@@ -0,0 +1,50 @@
+package io.roach.txn.retry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.roach.txn.annotation.TransactionBoundary;
+
+/**
+ * Resolves the {@link BackoffPolicy} for a transaction boundary by merging its
+ * annotation attributes with the global {@link BackoffProperties}. Policies are
+ * stateless, so one instance is cached per distinct annotation.
+ */
+@Component
+public class BackoffPolicyResolver {
+    private final Map<TransactionBoundary, BackoffPolicy> policies = new ConcurrentHashMap<>();
+
+    @Autowired
+    private BackoffProperties properties;
+
+    public BackoffPolicy resolve(TransactionBoundary transactionBoundary) {
+        return policies.computeIfAbsent(transactionBoundary, this::createPolicy);
+    }
+
+    private BackoffPolicy createPolicy(TransactionBoundary transactionBoundary) {
+        TransactionBoundary.Backoff strategy = transactionBoundary.backoff() != TransactionBoundary.Backoff.DEFAULT
+                ? transactionBoundary.backoff() : properties.getStrategy();
+        long initialMillis = transactionBoundary.backoffInitialMillis() >= 0
+                ? transactionBoundary.backoffInitialMillis() : properties.getInitialMillis();
+        double multiplier = transactionBoundary.backoffMultiplier() > 0
+                ? transactionBoundary.backoffMultiplier() : properties.getMultiplier();
+        long maxMillis = transactionBoundary.backoffMaxMillis() >= 0
+                ? transactionBoundary.backoffMaxMillis() : properties.getMaxMillis();
+
+        switch (strategy) {
+            case FIXED:
+                return new FixedBackoffPolicy(initialMillis);
+            case FULL_JITTER:
+                return new FullJitterBackoffPolicy(initialMillis, multiplier, maxMillis);
+            case DECORRELATED_JITTER:
+                return new DecorrelatedJitterBackoffPolicy(initialMillis, maxMillis);
+            case EXPONENTIAL:
+            case DEFAULT:
+            default:
+                return new ExponentialBackoffPolicy(initialMillis, multiplier, maxMillis);
+        }
+    }
+}
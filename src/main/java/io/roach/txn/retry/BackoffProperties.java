@@ -0,0 +1,53 @@
+package io.roach.txn.retry;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import io.roach.txn.annotation.TransactionBoundary;
+
+/**
+ * Global backoff defaults, used for every attribute left unset on {@link TransactionBoundary}.
+ */
+@Component
+@ConfigurationProperties(prefix = "roach.txn.backoff")
+public class BackoffProperties {
+    private TransactionBoundary.Backoff strategy = TransactionBoundary.Backoff.FULL_JITTER;
+
+    private long initialMillis = 150;
+
+    private double multiplier = 1.5;
+
+    private long maxMillis = 1000;
+
+    public TransactionBoundary.Backoff getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(TransactionBoundary.Backoff strategy) {
+        this.strategy = strategy;
+    }
+
+    public long getInitialMillis() {
+        return initialMillis;
+    }
+
+    public void setInitialMillis(long initialMillis) {
+        this.initialMillis = initialMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public void setMaxMillis(long maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+}
@@ -0,0 +1,30 @@
+package io.roach.txn.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decorrelated jitter where each delay is drawn between the initial delay and
+ * three times the previous delay, capped at the max delay.
+ */
+public class DecorrelatedJitterBackoffPolicy implements BackoffPolicy {
+    private final long initialMillis;
+
+    private final long maxMillis;
+
+    public DecorrelatedJitterBackoffPolicy(long initialMillis, long maxMillis) {
+        this.initialMillis = initialMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    @Override
+    public long nextBackoffMillis(int attempt, long previousMillis) {
+        long upper = Math.max(initialMillis, previousMillis) * 3;
+        long millis = ThreadLocalRandom.current().nextLong(initialMillis, Math.max(initialMillis, upper) + 1);
+        return Math.min(millis, maxMillis);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{initialMillis=" + initialMillis + ", maxMillis=" + maxMillis + '}';
+    }
+}
@@ -0,0 +1,34 @@
+package io.roach.txn.retry;
+
+/**
+ * Classic capped exponential backoff without any randomization.
+ */
+public class ExponentialBackoffPolicy implements BackoffPolicy {
+    protected final long initialMillis;
+
+    protected final double multiplier;
+
+    protected final long maxMillis;
+
+    public ExponentialBackoffPolicy(long initialMillis, double multiplier, long maxMillis) {
+        this.initialMillis = initialMillis;
+        this.multiplier = multiplier;
+        this.maxMillis = maxMillis;
+    }
+
+    @Override
+    public long nextBackoffMillis(int attempt, long previousMillis) {
+        return ceiling(attempt);
+    }
+
+    protected long ceiling(int attempt) {
+        double millis = initialMillis * Math.pow(multiplier, Math.max(0, attempt - 1));
+        return millis >= maxMillis ? maxMillis : (long) millis;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{initialMillis=" + initialMillis + ", multiplier=" + multiplier
+                + ", maxMillis=" + maxMillis + '}';
+    }
+}
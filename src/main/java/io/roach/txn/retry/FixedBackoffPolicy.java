@@ -0,0 +1,22 @@
+package io.roach.txn.retry;
+
+/**
+ * Constant delay between every attempt.
+ */
+public class FixedBackoffPolicy implements BackoffPolicy {
+    private final long delayMillis;
+
+    public FixedBackoffPolicy(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public long nextBackoffMillis(int attempt, long previousMillis) {
+        return delayMillis;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{delayMillis=" + delayMillis + '}';
+    }
+}
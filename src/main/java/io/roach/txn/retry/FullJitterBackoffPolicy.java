@@ -0,0 +1,18 @@
+package io.roach.txn.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff where the actual delay is drawn uniformly between zero
+ * and the exponential ceiling. Spreads out clients that aborted at the same time.
+ */
+public class FullJitterBackoffPolicy extends ExponentialBackoffPolicy {
+    public FullJitterBackoffPolicy(long initialMillis, double multiplier, long maxMillis) {
+        super(initialMillis, multiplier, maxMillis);
+    }
+
+    @Override
+    public long nextBackoffMillis(int attempt, long previousMillis) {
+        return ThreadLocalRandom.current().nextLong(ceiling(attempt) + 1);
+    }
+}
@@ -0,0 +1,104 @@
+package io.roach.txn.retry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Process-wide retry budget implemented as a token bucket. Every first attempt deposits
+ * a fraction of a token and every retry withdraws a whole token, which caps retries to
+ * at most {@code ratio} of first attempts over time. The bucket starts full so that
+ * occasional retries at low traffic are always allowed.
+ * <p>
+ * When the bucket is empty, retries are rejected and callers are expected to fail fast
+ * rather than adding more load to an already contended database.
+ */
+@Component
+public class RetryBudget {
+    // Tokens are kept in fixed-point to allow fractional deposits with a single CAS
+    private static final long SCALE = 1000;
+
+    private final AtomicLong tokens;
+
+    private final AtomicLong firstAttempts = new AtomicLong();
+
+    private final AtomicLong retriesGranted = new AtomicLong();
+
+    private final AtomicLong retriesRejected = new AtomicLong();
+
+    private final boolean enabled;
+
+    private final long deposit;
+
+    private final long capacity;
+
+    private final int retryAfterSeconds;
+
+    public RetryBudget(@Value("${roach.txn.retry-budget.enabled:true}") boolean enabled,
+                       @Value("${roach.txn.retry-budget.ratio:0.2}") double ratio,
+                       @Value("${roach.txn.retry-budget.max-tokens:100}") int maxTokens,
+                       @Value("${roach.txn.retry-budget.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.enabled = enabled;
+        this.deposit = (long) (ratio * SCALE);
+        this.capacity = maxTokens * SCALE;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.tokens = new AtomicLong(capacity);
+    }
+
+    /**
+     * Record a first attempt, which earns a fraction of a retry token.
+     */
+    public void recordAttempt() {
+        firstAttempts.incrementAndGet();
+        if (!enabled) {
+            return;
+        }
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= capacity) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(capacity, current + deposit)));
+    }
+
+    /**
+     * @return true if a retry is allowed, false if the budget is exhausted
+     */
+    public boolean tryAcquireRetry() {
+        if (!enabled) {
+            retriesGranted.incrementAndGet();
+            return true;
+        }
+        long current;
+        do {
+            current = tokens.get();
+            if (current < SCALE) {
+                retriesRejected.incrementAndGet();
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - SCALE));
+        retriesGranted.incrementAndGet();
+        return true;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public Map<String, Object> getState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("enabled", enabled);
+        state.put("ratio", (double) deposit / SCALE);
+        state.put("maxTokens", capacity / SCALE);
+        state.put("availableTokens", (double) tokens.get() / SCALE);
+        state.put("firstAttempts", firstAttempts.get());
+        state.put("retriesGranted", retriesGranted.get());
+        state.put("retriesRejected", retriesRejected.get());
+        state.put("retryAfterSeconds", retryAfterSeconds);
+        return state;
+    }
+}
@@ -0,0 +1,23 @@
+package io.roach.txn.retry;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the retry budget state at {@code /actuator/retrybudget}.
+ */
+@Component
+@Endpoint(id = "retrybudget")
+public class RetryBudgetEndpoint {
+    @Autowired
+    private RetryBudget retryBudget;
+
+    @ReadOperation
+    public Map<String, Object> retryBudget() {
+        return retryBudget.getState();
+    }
+}
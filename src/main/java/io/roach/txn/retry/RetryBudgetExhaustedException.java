@@ -0,0 +1,18 @@
+package io.roach.txn.retry;
+
+/**
+ * Thrown instead of retrying a transient error when the process-wide {@link RetryBudget}
+ * is exhausted. Mapped to HTTP 503 with a Retry-After header.
+ */
+public class RetryBudgetExhaustedException extends RuntimeException {
+    private final int retryAfterSeconds;
+
+    public RetryBudgetExhaustedException(String message, int retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,123 @@
+package io.roach.txn.retry;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides whether an exception thrown from a transaction boundary is transient and
+ * hence safe to retry.
+ * <p>
+ * The cause chain is walked down to the first {@link SQLException}, and if found, its
+ * SQLSTATE decides the verdict:
+ * <ul>
+ * <li>40001 - serialization failure, also used by all CockroachDB retry errors</li>
+ * <li>40P01 - deadlock detected</li>
+ * <li>08xxx - connection exceptions, also reported by {@link #isConnectionError(Throwable)}</li>
+ * </ul>
+ * A connection lost while committing leaves the outcome unknown, the transaction may have
+ * committed. Only the caller knows whether it was committing, so it is up to the retry advice
+ * to surface such connection errors rather than retrying them.
+ * CockroachDB "restart transaction" errors that lost their SQLSTATE when wrapped are
+ * matched by message. Without any SQLException in the chain, only Spring's
+ * {@link TransientDataAccessException} hierarchy is considered transient. A
+ * {@link RetryBudgetExhaustedException} is never transient, regardless of its cause.
+ * <p>
+ * What role each exception class plays in the chain is resolved once and cached, so
+ * classification during retry storms boils down to a few map lookups.
+ */
+@Component
+public class TransientErrorClassifier {
+    private static final int MAX_CAUSE_DEPTH = 32;
+
+    private enum Kind {
+        SQL,
+        TRANSIENT,
+        TERMINAL,
+        OTHER
+    }
+
+    private final Map<Class<?>, Kind> kinds = new ConcurrentHashMap<>();
+
+    public boolean isTransient(Throwable ex) {
+        boolean transientType = false;
+
+        Throwable t = ex;
+        for (int depth = 0; t != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            switch (kinds.computeIfAbsent(t.getClass(), TransientErrorClassifier::kindOf)) {
+                case SQL:
+                    return isTransient((SQLException) t);
+                case TRANSIENT:
+                    transientType = true;
+                    break;
+                case TERMINAL:
+                    return false;
+                default:
+                    break;
+            }
+            t = t.getCause() != t ? t.getCause() : null;
+        }
+
+        return transientType;
+    }
+
+    /**
+     * @return true if the first SQLException in the cause chain has a connection exception (08xxx) SQLSTATE
+     */
+    public boolean isConnectionError(Throwable ex) {
+        Throwable t = ex;
+        for (int depth = 0; t != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            switch (kinds.computeIfAbsent(t.getClass(), TransientErrorClassifier::kindOf)) {
+                case SQL:
+                    String sqlState = sqlStateOf((SQLException) t);
+                    return sqlState != null && sqlState.startsWith("08");
+                case TERMINAL:
+                    return false;
+                default:
+                    break;
+            }
+            t = t.getCause() != t ? t.getCause() : null;
+        }
+        return false;
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        if (RetryBudgetExhaustedException.class.isAssignableFrom(type)) {
+            return Kind.TERMINAL;
+        }
+        if (SQLException.class.isAssignableFrom(type)) {
+            return Kind.SQL;
+        }
+        if (TransientDataAccessException.class.isAssignableFrom(type)) {
+            return Kind.TRANSIENT;
+        }
+        return Kind.OTHER;
+    }
+
+    private boolean isTransient(SQLException ex) {
+        String sqlState = ex.getSQLState();
+        if (sqlState == null && ex.getNextException() != null) {
+            // Batch updates report the actual failure in the chained exception
+            return isTransient(ex.getNextException());
+        }
+        if (sqlState != null) {
+            if ("40001".equals(sqlState) || "40P01".equals(sqlState) || sqlState.startsWith("08")) {
+                return true;
+            }
+        }
+        String message = ex.getMessage();
+        return message != null && (message.contains("restart transaction")
+                || message.contains("TransactionRetryWithProtoRefreshError"));
+    }
+
+    private static String sqlStateOf(SQLException ex) {
+        String sqlState = ex.getSQLState();
+        if (sqlState == null && ex.getNextException() != null) {
+            return sqlStateOf(ex.getNextException());
+        }
+        return sqlState;
+    }
+}
@@ -0,0 +1,144 @@
+package io.roach.txn.sharding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.annotation.TransactionHints;
+import io.roach.txn.domain.AccountShard;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+import io.roach.txn.domain.NegativeBalanceException;
+import io.roach.txn.repository.LedgerRepository;
+import io.roach.txn.repository.ShardedAccountRepository;
+
+/**
+ * Transfers against accounts striped across balance shards, so that concurrent transfers
+ * to a hot account mostly update different rows. Each transfer picks a random shard:
+ * <ul>
+ * <li>Deposits are blind increments of the shard.</li>
+ * <li>Withdrawals are applied to the shard if its sum over all types covers the amount,
+ * otherwise the account is rebalanced by reading all shards.</li>
+ * </ul>
+ * Shard 0 is the account row, also updated by the non-sharded transfers which only see
+ * (and check their funds against) shard 0. No shard goes negative, so neither does the
+ * account. The balance is the sum of all shards (plus pending ledger entries, which count
+ * towards shard 0).
+ */
+@Service
+@ConditionalOnProperty(name = "roach.txn.sharding.enabled", havingValue = "true")
+public class ShardedTransferService {
+    @Autowired
+    private ShardedAccountRepository shardedAccountRepository;
+
+    @Autowired
+    private LedgerRepository ledgerRepository;
+
+    @Value("${roach.txn.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    private final int shards;
+
+    private final Counter rebalances;
+
+    public ShardedTransferService(@Value("${roach.txn.sharding.shards:8}") int shards,
+                                  MeterRegistry meterRegistry) {
+        this.shards = Math.max(1, shards);
+        this.rebalances = Counter.builder("txn.sharding.rebalances")
+                .description("Withdrawals not covered by a single balance shard")
+                .register(meterRegistry);
+    }
+
+    @TransactionBoundary
+    @TransactionHints(priorityEscalationAttempts = 3)
+    public void transfer(String name, AccountType type, Money amount) {
+        int shard = ThreadLocalRandom.current().nextInt(shards);
+
+        if (amount.isNegative()) {
+            if (shardedAccountRepository.addToShardConditionally(name, type, shard, amount) == 0) {
+                rebalance(name, type, amount);
+            }
+        } else if (shardedAccountRepository.addToShard(name, type, shard, amount) == 0) {
+            shardedAccountRepository.createShards(name, shards);
+            if (shardedAccountRepository.addToShard(name, type, shard, amount) == 0) {
+                throw new EmptyResultDataAccessException("No account " + name + " of type " + type, 1);
+            }
+        }
+    }
+
+    private void rebalance(String name, AccountType type, Money amount) {
+        rebalances.increment();
+
+        shardedAccountRepository.createShards(name, shards);
+        for (AccountShard row : rebalancedBalances(shardedAccountRepository.findShards(name), type, amount,
+                ledgerEnabled ? ledgerRepository.getPendingAmount(name) : Money.ZERO)) {
+            shardedAccountRepository.setBalance(name, row.getType(), row.getShard(), row.getBalance());
+        }
+    }
+
+    /**
+     * Applies the amount while spreading the total balance of the account evenly across all
+     * shards, with the remainder on the lowest shard. The rows of the given type absorb the
+     * difference, so the totals per type are preserved (except for the amount) and the sum
+     * over all types of every shard is its share.
+     *
+     * @param rows all shards of the account
+     * @param pending pending ledger amount, counted towards shard 0
+     * @return the rows of the given type with their new balance, where changed
+     * @throws NegativeBalanceException if the total balance does not cover the amount
+     */
+    static List<AccountShard> rebalancedBalances(List<AccountShard> rows, AccountType type, Money amount,
+                                                 Money pending) {
+        // By shard, lowest first
+        Map<Integer, AccountShard> targetRows = new TreeMap<>();
+        Map<Integer, Long> otherCents = new HashMap<>();
+        long totalCents = amount.getCents() + pending.getCents();
+        otherCents.put(0, pending.getCents());
+
+        String name = null;
+        for (AccountShard row : rows) {
+            name = row.getName();
+            totalCents += row.getBalance().getCents();
+            if (row.getType() == type) {
+                targetRows.put(row.getShard(), row);
+            } else {
+                otherCents.merge(row.getShard(), row.getBalance().getCents(), Long::sum);
+            }
+        }
+
+        if (targetRows.isEmpty()) {
+            throw new EmptyResultDataAccessException("No account " + name + " of type " + type, 1);
+        }
+        if (totalCents < 0) {
+            throw new NegativeBalanceException("Insufficient funds " + amount + " for user " + name);
+        }
+
+        // Shards may outnumber the configured count if it was lowered, include them all
+        long share = totalCents / targetRows.size();
+        long remainder = totalCents % targetRows.size();
+
+        int lowestShard = targetRows.keySet().iterator().next();
+
+        List<AccountShard> changed = new ArrayList<>();
+        for (AccountShard row : targetRows.values()) {
+            long targetCents = share + (row.getShard() == lowestShard ? remainder : 0);
+            Money balance = Money.ofCents(targetCents - otherCents.getOrDefault(row.getShard(), 0L));
+            if (!balance.equals(row.getBalance())) {
+                changed.add(new AccountShard(row.getName(), row.getType(), row.getShard(), balance));
+            }
+        }
+        return changed;
+    }
+}
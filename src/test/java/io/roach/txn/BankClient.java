@@ -8,10 +8,14 @@ import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.client.Traverson;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
+import io.roach.txn.controller.MoneyJsonComponent;
 import io.roach.txn.controller.TransferRequest;
 import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
 
 public class BankClient {
     private final Link transferLink;
@@ -33,12 +37,17 @@ public class BankClient {
     }
 
     public ResponseEntity<String> transfer(String name, AccountType type, BigDecimal amount) {
-        return new RestTemplate()
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getMessageConverters().add(0, new MappingJackson2HttpMessageConverter(
+                Jackson2ObjectMapperBuilder.json()
+                        .serializerByType(Money.class, new MoneyJsonComponent.Serializer())
+                        .build()));
+        return restTemplate
                 .postForEntity(transferLink.toUri(),
                         TransferRequest.builder()
                                 .setName(name)
                                 .setAccountType(type)
-                                .setAmount(amount)
+                                .setAmount(Money.of(amount))
                                 .build(),
                         String.class);
     }
@@ -0,0 +1,453 @@
+package io.roach.txn.aspect;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import ch.qos.logback.classic.LoggerContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.annotation.TransactionHints;
+import io.roach.txn.bulkhead.TransactionBulkhead;
+import io.roach.txn.contention.ContentionLimiter;
+import io.roach.txn.locking.LockingReadPolicy;
+import io.roach.txn.metrics.TransactionMetrics;
+import io.roach.txn.retry.BackoffPolicyResolver;
+import io.roach.txn.retry.BackoffProperties;
+import io.roach.txn.retry.RetryBudget;
+import io.roach.txn.retry.TransientErrorClassifier;
+
+/**
+ * JMH benchmarks of the per-call overhead of the {@link RetryableTransactionalAspect},
+ * {@link SavepointTransactionalAspect} and {@link TransactionHintsAspect}, advising a no-op
+ * service through a {@link DataSourceTransactionManager} on a stub data source.
+ * <p>
+ * {@code transactionOnly} is the floor: the proxy and transaction interceptor alone.
+ * The difference to the other benchmarks is the cost of the aspects. On the
+ * first-attempt-success path the advice code itself should not allocate, leaving only
+ * the join point and invocation copy Spring AOP creates for each around advice.
+ * Transient failures are retried without backoff and retry logging is turned off, so
+ * that the retry benchmarks measure the advice rather than sleeping or the log appender.
+ * <p>
+ * Run with {@code mvn -Pjmh test}, which fails when a benchmark allocates more bytes per
+ * operation than its budget in {@link #ALLOCATION_BUDGETS}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AspectOverheadJmhBenchmark {
+    private static final String ALLOCATION_RATE = "·gc.alloc.rate.norm";
+
+    private static final org.slf4j.Logger logger = LoggerFactory.getLogger(AspectOverheadJmhBenchmark.class);
+
+    // Normalized allocation (gc.alloc.rate.norm) per benchmark, with about 10% headroom over
+    // the measured values. Lower a budget after an improvement, raising one needs a reason.
+    private static final Map<String, Double> ALLOCATION_BUDGETS = new LinkedHashMap<>();
+
+    static {
+        ALLOCATION_BUDGETS.put("transactionOnly", 800.0);
+        ALLOCATION_BUDGETS.put("retryFirstAttempt", 1100.0);
+        ALLOCATION_BUDGETS.put("hintsFirstAttempt", 1450.0);
+        ALLOCATION_BUDGETS.put("savepointFirstAttempt", 1750.0);
+        ALLOCATION_BUDGETS.put("retryTransientFailures count=1", 3600.0);
+        ALLOCATION_BUDGETS.put("retryTransientFailures count=3", 8450.0);
+        ALLOCATION_BUDGETS.put("savepointTransientFailures count=1", 3450.0);
+        ALLOCATION_BUDGETS.put("savepointTransientFailures count=3", 6600.0);
+    }
+
+    private static final Object RESULT = new Object();
+
+    // Preallocated, the cost of filling in stack traces belongs to the driver
+    private static final ConcurrencyFailureException TRANSIENT_ERROR =
+            new ConcurrencyFailureException("restart transaction");
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(getClass().getName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+
+        Map<String, Double> bytesPerOp = new LinkedHashMap<>();
+        for (RunResult runResult : results) {
+            String label = runResult.getParams().getBenchmark().replaceFirst(".*\\.", "");
+            for (String key : runResult.getParams().getParamsKeys()) {
+                label += " " + key + "=" + runResult.getParams().getParam(key);
+            }
+            Result allocation = runResult.getSecondaryResults().get(ALLOCATION_RATE);
+            bytesPerOp.put(label, allocation != null ? allocation.getScore() : Double.NaN);
+            logger.info(String.format("%-40s %10.1f ns/op %10.1f bytes/op",
+                    label, runResult.getPrimaryResult().getScore(), bytesPerOp.get(label)));
+        }
+
+        double floor = bytesPerOp.getOrDefault("transactionOnly", Double.NaN);
+        logger.info(String.format("%-40s %10.1f bytes/op", "retryFirstAttempt - transactionOnly",
+                bytesPerOp.getOrDefault("retryFirstAttempt", Double.NaN) - floor));
+
+        List<String> overBudget = new ArrayList<>();
+        ALLOCATION_BUDGETS.forEach((label, budget) -> {
+            double bytes = bytesPerOp.getOrDefault(label, Double.NaN);
+            if (!(bytes <= budget)) {
+                overBudget.add(String.format("%s %.1f > %.0f bytes/op", label, bytes, budget));
+            }
+        });
+        Assert.assertTrue("Allocation over budget: " + overBudget, overBudget.isEmpty());
+    }
+
+    @State(Scope.Benchmark)
+    public static class RetryContext {
+        AnnotationConfigApplicationContext context;
+
+        BenchmarkService service;
+
+        @Setup
+        public void setUp() {
+            context = createContext(BenchmarkConfiguration.class, HintsConfiguration.class);
+            service = context.getBean(BenchmarkService.class);
+        }
+
+        @TearDown
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SavepointContext {
+        AnnotationConfigApplicationContext context;
+
+        BenchmarkService service;
+
+        @Setup
+        public void setUp() {
+            context = createContext(BenchmarkConfiguration.class, SavepointConfiguration.class);
+            service = context.getBean(BenchmarkService.class);
+        }
+
+        @TearDown
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TransientFailures {
+        @Param({"1", "3"})
+        int count;
+
+        int remaining;
+    }
+
+    @Benchmark
+    public Object transactionOnly(RetryContext retryContext) {
+        return retryContext.service.transactional();
+    }
+
+    @Benchmark
+    public Object retryFirstAttempt(RetryContext retryContext) {
+        return retryContext.service.boundary();
+    }
+
+    @Benchmark
+    public Object retryTransientFailures(RetryContext retryContext, TransientFailures failures) {
+        failures.remaining = failures.count;
+        return retryContext.service.failingBoundary(failures);
+    }
+
+    @Benchmark
+    public Object hintsFirstAttempt(RetryContext retryContext) {
+        return retryContext.service.hintedBoundary();
+    }
+
+    @Benchmark
+    public Object savepointFirstAttempt(SavepointContext savepointContext) {
+        return savepointContext.service.boundary();
+    }
+
+    @Benchmark
+    public Object savepointTransientFailures(SavepointContext savepointContext, TransientFailures failures) {
+        failures.remaining = failures.count;
+        return savepointContext.service.failingBoundary(failures);
+    }
+
+    private static AnnotationConfigApplicationContext createContext(Class<?>... configurations) {
+        ((LoggerContext) LoggerFactory.getILoggerFactory())
+                .getLogger("io.roach.txn").setLevel(ch.qos.logback.classic.Level.ERROR);
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Collections.singletonMap("info.build.artifact", "roach-txn-benchmark")));
+        context.register(configurations);
+        context.refresh();
+        return context;
+    }
+
+    public static class BenchmarkService {
+        @Transactional(propagation = Propagation.REQUIRES_NEW)
+        public Object transactional() {
+            return RESULT;
+        }
+
+        @TransactionBoundary
+        public Object boundary() {
+            return RESULT;
+        }
+
+        @TransactionBoundary(backoff = TransactionBoundary.Backoff.FIXED, backoffInitialMillis = 0)
+        public Object failingBoundary(TransientFailures failures) {
+            if (failures.remaining-- > 0) {
+                throw TRANSIENT_ERROR;
+            }
+            return RESULT;
+        }
+
+        @TransactionBoundary
+        @TransactionHints(priority = TransactionHints.Priority.HIGH)
+        public Object hintedBoundary() {
+            return RESULT;
+        }
+    }
+
+    @Configuration
+    @EnableAspectJAutoProxy(proxyTargetClass = true)
+    @EnableTransactionManagement(order = AdvisorOrder.LEVEL_2)
+    public static class BenchmarkConfiguration {
+        @Bean
+        public DataSource dataSource() {
+            return new StubDataSource();
+        }
+
+        @Bean
+        public PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public TransactionMetrics transactionMetrics() {
+            return new TransactionMetrics();
+        }
+
+        @Bean
+        public BackoffProperties backoffProperties() {
+            return new BackoffProperties();
+        }
+
+        @Bean
+        public BackoffPolicyResolver backoffPolicyResolver() {
+            return new BackoffPolicyResolver();
+        }
+
+        @Bean
+        public TransientErrorClassifier transientErrorClassifier() {
+            return new TransientErrorClassifier();
+        }
+
+        @Bean
+        public RetryBudget retryBudget() {
+            // Every call retries, which would drain any budget
+            return new RetryBudget(false, 0.2, 100, 1);
+        }
+
+        @Bean
+        public ContentionLimiter contentionLimiter() {
+            return new ContentionLimiter(true, 1024, 15000);
+        }
+
+        @Bean
+        public TransactionBulkhead transactionBulkhead() {
+            return new TransactionBulkhead(true, 16, 256, 5000);
+        }
+
+        @Bean
+        public LockingReadPolicy lockingReadPolicy() {
+            return new LockingReadPolicy(true, 100, 0.2, 0.05, 10000, 300000);
+        }
+
+        @Bean(destroyMethod = "shutdown")
+        public ScheduledExecutorService retryScheduler() {
+            return Executors.newSingleThreadScheduledExecutor();
+        }
+
+        @Bean(destroyMethod = "shutdown")
+        public ExecutorService retryExecutor() {
+            return Executors.newFixedThreadPool(2);
+        }
+
+        @Bean
+        public RetryableTransactionalAspect retryableTransactionalAspect() {
+            return new RetryableTransactionalAspect();
+        }
+
+        @Bean
+        public BenchmarkService benchmarkService() {
+            return new BenchmarkService();
+        }
+    }
+
+    @Configuration
+    public static class HintsConfiguration {
+        @Bean
+        public TransactionHintsAspect transactionHintsAspect() {
+            return new TransactionHintsAspect();
+        }
+    }
+
+    @Configuration
+    public static class SavepointConfiguration {
+        @Bean
+        public SavepointTransactionalAspect savepointTransactionalAspect() {
+            return new SavepointTransactionalAspect("cockroach_restart", 10);
+        }
+    }
+
+    /**
+     * Data source handing out the same no-op connection, where every JDBC call returns
+     * a default value.
+     */
+    private static class StubDataSource implements DataSource {
+        private final Connection connection = stub(Connection.class);
+
+        @Override
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return connection;
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) {
+            return null;
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return null;
+        }
+    }
+
+    private static <T> T stub(Class<T> type) {
+        Savepoint savepoint = type == Connection.class ? stub(Savepoint.class) : null;
+        Statement statement = type == Connection.class ? stub(Statement.class) : null;
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "setSavepoint":
+                    return savepoint;
+                case "createStatement":
+                    return statement;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "Stub" + type.getSimpleName();
+                default:
+                    return defaultValue(method);
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType == boolean.class) {
+            return Boolean.FALSE;
+        }
+        if (returnType == int.class) {
+            return 0;
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
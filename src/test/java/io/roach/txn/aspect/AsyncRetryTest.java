@@ -0,0 +1,140 @@
+package io.roach.txn.aspect;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import io.roach.txn.annotation.TransactionBoundary;
+
+public class AsyncRetryTest {
+    private AnnotationConfigApplicationContext context;
+
+    private AsyncService service;
+
+    @Before
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.register(AspectOverheadJmhBenchmark.BenchmarkConfiguration.class, AsyncConfiguration.class);
+        context.refresh();
+        service = context.getBean(AsyncService.class);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void whenTransientError_thenAllAttemptsOnWorkerPool() throws Exception {
+        List<String> threads = new CopyOnWriteArrayList<>();
+        Assert.assertEquals("ok", service.failing(new AtomicInteger(2), threads).get(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(3, threads.size());
+        for (String thread : threads) {
+            Assert.assertTrue(thread, thread.startsWith("worker"));
+        }
+    }
+
+    @Test
+    public void whenFirstAttemptBlocks_thenCallerNotHeld() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<String> blocked = service.keyed("bob", entered, release);
+            Assert.assertFalse(blocked.isDone());
+            Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            release.countDown();
+            Assert.assertEquals("bob", blocked.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void whenContentionKeyHeld_thenAdmissionPolledWithoutBlocking() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService holder = Executors.newSingleThreadExecutor();
+        try {
+            holder.submit(() -> service.keyed("alice", entered, release));
+            Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<String> waiting = service.keyed("alice", new CountDownLatch(1), new CountDownLatch(0));
+            Assert.assertFalse(waiting.isDone());
+
+            release.countDown();
+            Assert.assertEquals("alice", waiting.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            holder.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void whenCallableReturned_thenRejected() {
+        service.callable();
+    }
+
+    public static class AsyncService {
+        @TransactionBoundary(async = true, backoff = TransactionBoundary.Backoff.FIXED, backoffInitialMillis = 1)
+        public CompletableFuture<String> failing(AtomicInteger failures, List<String> threads) {
+            threads.add(Thread.currentThread().getName());
+            if (failures.getAndDecrement() > 0) {
+                throw new ConcurrencyFailureException("restart transaction");
+            }
+            return CompletableFuture.completedFuture("ok");
+        }
+
+        @TransactionBoundary(async = true, contentionKey = "#key")
+        public CompletableFuture<String> keyed(String key, CountDownLatch entered, CountDownLatch release) {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(key);
+        }
+
+        @TransactionBoundary(async = true)
+        public Callable<String> callable() {
+            return () -> "ok";
+        }
+    }
+
+    @Configuration
+    public static class AsyncConfiguration {
+        @Bean(destroyMethod = "shutdown")
+        public ScheduledExecutorService retryScheduler() {
+            return Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "timer"));
+        }
+
+        @Bean(destroyMethod = "shutdown")
+        public ExecutorService retryExecutor() {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(2, runnable -> new Thread(runnable, "worker-" + count.incrementAndGet()));
+        }
+
+        @Bean
+        public AsyncService asyncService() {
+            return new AsyncService();
+        }
+    }
+}
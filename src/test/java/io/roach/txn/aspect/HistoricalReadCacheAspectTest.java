@@ -0,0 +1,158 @@
+package io.roach.txn.aspect;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpEntity;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.annotation.TransactionHints;
+import io.roach.txn.cache.HistoricalReadCache;
+
+public class HistoricalReadCacheAspectTest {
+    private AnnotationConfigApplicationContext context;
+
+    private HistoricalService service;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Before
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.register(AspectOverheadJmhBenchmark.BenchmarkConfiguration.class, CacheConfiguration.class);
+        context.refresh();
+        service = context.getBean(HistoricalService.class);
+        context.getBean(HistoricalReadCacheAspect.class).setClock(clock::get);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void whenSameWindow_thenServedFromCache() {
+        // Follower reads lag 4800 ms behind, window [10000, 11000)
+        clock.set(15_000);
+        List<String> first = service.followerRead("alice");
+        clock.set(15_400);
+        Assert.assertSame(first, service.followerRead("alice"));
+        Assert.assertEquals(1, service.getInvocations());
+
+        Assert.assertNotSame(first, service.followerRead("bob"));
+        Assert.assertEquals(2, service.getInvocations());
+    }
+
+    @Test
+    public void whenReadTimestampMovesOn_thenReadAgain() {
+        clock.set(15_700);
+        service.followerRead("alice");
+        clock.set(15_800);
+        service.followerRead("alice");
+        Assert.assertEquals(2, service.getInvocations());
+    }
+
+    @Test
+    public void whenTimeTravelInterval_thenWindowOffsetByInterval() {
+        clock.set(2_592_001_000L);
+        service.timeTravel();
+        clock.set(2_592_001_999L);
+        service.timeTravel();
+        Assert.assertEquals(1, service.getInvocations());
+        clock.set(2_592_002_000L);
+        service.timeTravel();
+        Assert.assertEquals(2, service.getInvocations());
+    }
+
+    @Test
+    public void whenIntervalUnitsOrSign_thenParsedLocally() {
+        Assert.assertEquals(Long.valueOf(-10_000), HistoricalReadCacheAspect.parseIntervalMillis("-10s"));
+        Assert.assertEquals(Long.valueOf(-90_000), HistoricalReadCacheAspect.parseIntervalMillis("-1m30s"));
+        Assert.assertEquals(Long.valueOf(-300_000), HistoricalReadCacheAspect.parseIntervalMillis(" -5 minutes "));
+        Assert.assertEquals(Long.valueOf(-2_592_000_000L), HistoricalReadCacheAspect.parseIntervalMillis("-1 month"));
+        Assert.assertEquals(Long.valueOf(-10_500), HistoricalReadCacheAspect.parseIntervalMillis("-00:00:10.5"));
+        Assert.assertEquals(Long.valueOf(3_600_000), HistoricalReadCacheAspect.parseIntervalMillis("1h"));
+        Assert.assertNull(HistoricalReadCacheAspect.parseIntervalMillis("-10 fortnights"));
+        Assert.assertNull(HistoricalReadCacheAspect.parseIntervalMillis("-1 month -2 days"));
+    }
+
+    @Test
+    public void whenReadTimestampNotInPast_thenNotCached() {
+        clock.set(10_000);
+        service.future();
+        service.future();
+        Assert.assertEquals(2, service.getInvocations());
+    }
+
+    @Test
+    public void whenWebModelReturned_thenNotCached() {
+        clock.set(15_000);
+        service.model();
+        service.model();
+        Assert.assertEquals(2, service.getInvocations());
+    }
+
+    public static class HistoricalService {
+        private final AtomicInteger invocations = new AtomicInteger();
+
+        public int getInvocations() {
+            return invocations.get();
+        }
+
+        @TransactionBoundary
+        @TransactionHints(readOnly = true, followerRead = true)
+        public List<String> followerRead(String name) {
+            invocations.incrementAndGet();
+            return Collections.singletonList(name);
+        }
+
+        @TransactionBoundary
+        @TransactionHints(readOnly = true, timeTravelReadInterval = "-1 month")
+        public List<String> timeTravel() {
+            invocations.incrementAndGet();
+            return Collections.emptyList();
+        }
+
+        @TransactionBoundary
+        @TransactionHints(readOnly = true, timeTravelReadInterval = "1h")
+        public List<String> future() {
+            invocations.incrementAndGet();
+            return Collections.emptyList();
+        }
+
+        @TransactionBoundary
+        @TransactionHints(readOnly = true, followerRead = true)
+        public HttpEntity<String> model() {
+            invocations.incrementAndGet();
+            return new HttpEntity<>("model");
+        }
+    }
+
+    @Configuration
+    public static class CacheConfiguration {
+        @Bean
+        public HistoricalReadCache historicalReadCache(MeterRegistry meterRegistry) {
+            return new HistoricalReadCache(meterRegistry, true, 1000, 100, 1 << 20);
+        }
+
+        @Bean
+        public HistoricalReadCacheAspect historicalReadCacheAspect() {
+            return new HistoricalReadCacheAspect();
+        }
+
+        @Bean
+        public HistoricalService historicalService() {
+            return new HistoricalService();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package io.roach.txn.aspect;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.TransactionSystemException;
+
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.annotation.TransactionHints;
+
+public class SavepointTransactionalAspectTest {
+    private static final List<String> log = new CopyOnWriteArrayList<>();
+
+    // Connection method to fail with a connection exception, if any
+    private static volatile String failingCall;
+
+    private AnnotationConfigApplicationContext context;
+
+    private SavepointService service;
+
+    @Before
+    public void setUp() {
+        log.clear();
+        failingCall = null;
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test",
+                Collections.singletonMap("info.build.artifact", "roach-txn-test")));
+        context.register(AspectOverheadJmhBenchmark.BenchmarkConfiguration.class,
+                AspectOverheadJmhBenchmark.HintsConfiguration.class, SavepointConfiguration.class);
+        context.refresh();
+        service = context.getBean(SavepointService.class);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void whenHinted_thenSavepointIsFirstStatement() {
+        service.hinted(new AtomicInteger());
+
+        Assert.assertEquals("setSavepoint", log.get(0));
+        Assert.assertTrue(log.get(1), log.get(1).startsWith("execute SET "));
+        Assert.assertEquals("releaseSavepoint", log.get(2));
+        Assert.assertEquals("commit", log.get(3));
+    }
+
+    @Test
+    public void whenTransientError_thenHintsReappliedAfterRollbackToSavepoint() {
+        AtomicInteger invocations = new AtomicInteger();
+        service.hinted(invocations, 2);
+
+        Assert.assertEquals(3, invocations.get());
+        Assert.assertEquals(1, count("setSavepoint"));
+        Assert.assertEquals(2, count("rollbackToSavepoint"));
+        Assert.assertEquals(3, count("execute SET "));
+        Assert.assertEquals(1, count("commit"));
+    }
+
+    @Test
+    public void whenSavepointAttemptsExhausted_thenTotalAttemptsBounded() {
+        AtomicInteger invocations = new AtomicInteger();
+        try {
+            service.alwaysFailing(invocations);
+            Assert.fail("Expected exhausted retries");
+        } catch (ConcurrencyFailureException expected) {
+        }
+
+        // 3 savepoint attempts in the first transaction, then 4 more transactions without savepoints
+        Assert.assertEquals(3 + 4, invocations.get());
+        Assert.assertEquals(1, count("setSavepoint"));
+        Assert.assertEquals(2, count("rollbackToSavepoint"));
+        Assert.assertEquals(5, log.stream().filter("rollback"::equals).count());
+    }
+
+    @Test
+    public void whenConnectionLostBeforeCommit_thenRestarted() {
+        AtomicInteger invocations = new AtomicInteger();
+        service.connectionLost(invocations, 1);
+
+        // Not rolled back to the savepoint on the lost connection, but restarted in a new transaction
+        Assert.assertEquals(2, invocations.get());
+        Assert.assertEquals(0, count("rollbackToSavepoint"));
+        Assert.assertEquals(1, count("commit"));
+    }
+
+    @Test
+    public void whenConnectionLostAtCommit_thenNotRetried() {
+        failingCall = "commit";
+        AtomicInteger invocations = new AtomicInteger();
+        try {
+            service.hinted(invocations);
+            Assert.fail("Expected connection error");
+        } catch (TransactionSystemException expected) {
+        }
+
+        Assert.assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void whenConnectionLostAtRelease_thenNotRetried() {
+        failingCall = "releaseSavepoint";
+        AtomicInteger invocations = new AtomicInteger();
+        try {
+            service.hinted(invocations);
+            Assert.fail("Expected connection error");
+        } catch (TransactionSystemException expected) {
+        }
+
+        Assert.assertEquals(1, invocations.get());
+        Assert.assertEquals(0, count("rollbackToSavepoint"));
+    }
+
+    private static int count(String prefix) {
+        return (int) log.stream().filter(entry -> entry.startsWith(prefix)).count();
+    }
+
+    public static class SavepointService {
+        @TransactionBoundary(backoff = TransactionBoundary.Backoff.FIXED, backoffInitialMillis = 0)
+        @TransactionHints(priority = TransactionHints.Priority.HIGH)
+        public void hinted(AtomicInteger invocations) {
+            hinted(invocations, 0);
+        }
+
+        @TransactionBoundary(backoff = TransactionBoundary.Backoff.FIXED, backoffInitialMillis = 0)
+        @TransactionHints(priority = TransactionHints.Priority.HIGH)
+        public void hinted(AtomicInteger invocations, int failures) {
+            if (invocations.incrementAndGet() <= failures) {
+                throw new ConcurrencyFailureException("restart transaction");
+            }
+        }
+
+        @TransactionBoundary(backoff = TransactionBoundary.Backoff.FIXED, backoffInitialMillis = 0)
+        public void connectionLost(AtomicInteger invocations, int failures) {
+            if (invocations.incrementAndGet() <= failures) {
+                throw new DataAccessResourceFailureException("connection lost",
+                        new SQLException("connection reset", "08006"));
+            }
+        }
+
+        @TransactionBoundary(retryAttempts = 5, backoff = TransactionBoundary.Backoff.FIXED, backoffInitialMillis = 0)
+        public void alwaysFailing(AtomicInteger invocations) {
+            invocations.incrementAndGet();
+            throw new ConcurrencyFailureException("restart transaction");
+        }
+    }
+
+    @Configuration
+    public static class SavepointConfiguration {
+        @Bean
+        public DataSource dataSource() {
+            return new RecordingDataSource();
+        }
+
+        @Bean
+        public TransactionMetricsAspect transactionMetricsAspect() {
+            return new TransactionMetricsAspect();
+        }
+
+        @Bean
+        public SavepointTransactionalAspect savepointTransactionalAspect() {
+            return new SavepointTransactionalAspect("cockroach_restart", 3);
+        }
+
+        @Bean
+        public SavepointService savepointService() {
+            return new SavepointService();
+        }
+    }
+
+    /**
+     * Hands out connections that record the transaction control calls and executed SQL.
+     */
+    private static class RecordingDataSource extends AbstractDataSource {
+        @Override
+        public Connection getConnection() {
+            Savepoint savepoint = (Savepoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Savepoint.class}, (proxy, method, args) -> null);
+            Statement statement = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Statement.class}, (proxy, method, args) -> {
+                        if ("execute".equals(method.getName())) {
+                            log.add("execute " + args[0]);
+                        }
+                        return method.getReturnType() == boolean.class ? false : null;
+                    });
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "setSavepoint":
+                            case "releaseSavepoint":
+                            case "commit":
+                                log.add(method.getName());
+                                if (method.getName().equals(failingCall)) {
+                                    throw new SQLException("connection reset", "08006");
+                                }
+                                return method.getName().equals("setSavepoint") ? savepoint : null;
+                            case "rollback":
+                                log.add(args != null ? "rollbackToSavepoint" : "rollback");
+                                return null;
+                            case "createStatement":
+                                return statement;
+                            case "getAutoCommit":
+                            case "isWrapperFor":
+                                return false;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                return method.getReturnType() == boolean.class ? false
+                                        : method.getReturnType() == int.class ? 0 : null;
+                        }
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+    }
+}
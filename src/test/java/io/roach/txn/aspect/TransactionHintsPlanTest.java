@@ -0,0 +1,76 @@
+package io.roach.txn.aspect;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ReflectionUtils;
+
+import io.roach.txn.annotation.TransactionHint;
+import io.roach.txn.annotation.TransactionHints;
+
+public class TransactionHintsPlanTest {
+    @TransactionHints(priority = TransactionHints.Priority.LOW, priorityEscalationAttempts = 2, readOnly = true)
+    public void escalating() {
+    }
+
+    @TransactionHints(priority = TransactionHints.Priority.LOW, priorityEscalationAttempts = 1,
+            maxPriority = TransactionHints.Priority.NORMAL)
+    public void capped() {
+    }
+
+    @TransactionHints(priority = TransactionHints.Priority.HIGH)
+    public void fixed() {
+    }
+
+    @TransactionHints(priorityEscalationAttempts = 3)
+    public void escalatingFromNormal() {
+    }
+
+    @TransactionHints(hints = @TransactionHint(name = "default_transaction_priority", value = "low"))
+    public void sessionDefaultChanged() {
+    }
+
+    @Test
+    public void whenEscalating_thenPriorityRaisedEveryNAttempts() {
+        TransactionHintsPlan plan = plan("escalating");
+        Assert.assertEquals("SET TRANSACTION PRIORITY LOW, READ ONLY", plan.getTransactionSql(1));
+        Assert.assertEquals("SET TRANSACTION PRIORITY LOW, READ ONLY", plan.getTransactionSql(2));
+        Assert.assertEquals("SET TRANSACTION READ ONLY", plan.getTransactionSql(3));
+        Assert.assertEquals("SET TRANSACTION READ ONLY", plan.getTransactionSql(4));
+        Assert.assertEquals("SET TRANSACTION PRIORITY HIGH, READ ONLY", plan.getTransactionSql(5));
+        Assert.assertEquals("SET TRANSACTION PRIORITY HIGH, READ ONLY", plan.getTransactionSql(30));
+        Assert.assertTrue(plan.getSql(5).endsWith("; SET TRANSACTION PRIORITY HIGH, READ ONLY"));
+    }
+
+    @Test
+    public void whenEscalating_thenCappedAtMaxPriority() {
+        PrioritySchedule schedule = plan("capped").getPrioritySchedule();
+        Assert.assertEquals(TransactionHints.Priority.LOW, schedule.priorityOf(1));
+        Assert.assertEquals(TransactionHints.Priority.NORMAL, schedule.priorityOf(2));
+        Assert.assertEquals(TransactionHints.Priority.NORMAL, schedule.priorityOf(10));
+    }
+
+    @Test
+    public void whenNotEscalating_thenSamePriorityForAllAttempts() {
+        TransactionHintsPlan plan = plan("fixed");
+        Assert.assertEquals("SET TRANSACTION PRIORITY HIGH", plan.getTransactionSql(1));
+        Assert.assertEquals("SET TRANSACTION PRIORITY HIGH", plan.getTransactionSql(30));
+    }
+
+    @Test
+    public void whenDefaultPriority_thenNoTransactionStatement() {
+        TransactionHintsPlan plan = plan("escalatingFromNormal");
+        Assert.assertEquals("", plan.getTransactionSql(1));
+        Assert.assertEquals("", plan.getTransactionSql(3));
+        Assert.assertEquals("SET TRANSACTION PRIORITY HIGH", plan.getTransactionSql(4));
+        Assert.assertTrue(plan.getSql(1).endsWith("; "));
+
+        Assert.assertEquals("SET TRANSACTION PRIORITY NORMAL", plan("sessionDefaultChanged").getTransactionSql(1));
+    }
+
+    private static TransactionHintsPlan plan(String methodName) {
+        TransactionHints transactionHints = AnnotationUtils.findAnnotation(
+                ReflectionUtils.findMethod(TransactionHintsPlanTest.class, methodName), TransactionHints.class);
+        return TransactionHintsPlan.compile(transactionHints, "test");
+    }
+}
@@ -0,0 +1,162 @@
+package io.roach.txn.batch;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import io.roach.txn.aspect.AspectOverheadJmhBenchmark;
+import io.roach.txn.controller.TransferRequest;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+import io.roach.txn.repository.InMemoryAccountRepository;
+
+public class BatchTransferServiceTest {
+    private AnnotationConfigApplicationContext context;
+
+    private BatchTransferService service;
+
+    private InMemoryAccountRepository repository;
+
+    private RecordingJdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.register(AspectOverheadJmhBenchmark.BenchmarkConfiguration.class, BatchConfiguration.class);
+        context.refresh();
+        service = context.getBean(BatchTransferService.class);
+        repository = context.getBean(InMemoryAccountRepository.class);
+        jdbcTemplate = (RecordingJdbcTemplate) context.getBean(JdbcTemplate.class);
+
+        repository.set("alice", AccountType.asset, Money.of("100"));
+        repository.set("alice", AccountType.expense, Money.ZERO);
+        repository.set("bob", AccountType.asset, Money.of("100"));
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void whenTransfers_thenUpdatedInNameAndTypeOrder() {
+        boolean[] accepted = service.applyTransfers(Arrays.asList(
+                transfer("bob", AccountType.asset, "-10"),
+                transfer("alice", AccountType.expense, "5"),
+                transfer("alice", AccountType.asset, "-500"),
+                transfer("alice", AccountType.asset, "-20")));
+
+        Assert.assertArrayEquals(new boolean[] {true, true, false, true}, accepted);
+        Assert.assertEquals(Arrays.asList("alice/asset", "alice/expense", "bob/asset"), jdbcTemplate.updates);
+        Assert.assertEquals(Money.of("85"), repository.getBalance("alice"));
+        Assert.assertEquals(Money.of("90"), repository.getBalance("bob"));
+    }
+
+    @Test
+    public void whenAccountTypeMissing_thenBatchFails() {
+        try {
+            service.applyTransfers(Arrays.asList(
+                    transfer("bob", AccountType.expense, "50"),
+                    transfer("bob", AccountType.asset, "-120")));
+            Assert.fail("Expected missing account");
+        } catch (EmptyResultDataAccessException e) {
+            Assert.assertEquals("No account bob of type expense", e.getMessage());
+        }
+    }
+
+    @Test
+    public void whenAccountNameMissing_thenRejected() {
+        boolean[] accepted = service.applyTransfers(Arrays.asList(
+                transfer("carol", AccountType.asset, "10")));
+
+        Assert.assertArrayEquals(new boolean[] {false}, accepted);
+        Assert.assertTrue(jdbcTemplate.updates.isEmpty());
+    }
+
+    private static TransferRequest transfer(String name, AccountType type, String amount) {
+        return TransferRequest.builder()
+                .setName(name)
+                .setAccountType(type)
+                .setAmount(Money.of(amount))
+                .build();
+    }
+
+    /**
+     * Applies batch updates to the in-memory repository, returning a zero count for
+     * accounts that don't exist.
+     */
+    public static class RecordingJdbcTemplate extends JdbcTemplate {
+        public final List<String> updates = new ArrayList<>();
+
+        private final InMemoryAccountRepository repository;
+
+        public RecordingJdbcTemplate(DataSource dataSource, InMemoryAccountRepository repository) {
+            super(dataSource);
+            this.repository = repository;
+        }
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            int[] counts = new int[batchArgs.size()];
+            int i = 0;
+            for (T arg : batchArgs) {
+                Object[] params = new Object[3];
+                PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                            params[(Integer) args[0] - 1] = args[1];
+                            return null;
+                        });
+                try {
+                    pss.setValues(ps, arg);
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+                String name = (String) params[1];
+                AccountType type = AccountType.valueOf((String) params[2]);
+                updates.add(name + "/" + type);
+                if (repository.exists(name, type)) {
+                    repository.updateBalance(name, type, Money.ofCents((Long) params[0]));
+                    counts[i] = 1;
+                }
+                i++;
+            }
+            return new int[][] {counts};
+        }
+    }
+
+    @Configuration
+    public static class BatchConfiguration {
+        @Bean
+        public InMemoryAccountRepository accountRepository() {
+            return new InMemoryAccountRepository();
+        }
+
+        @Bean
+        public JdbcTemplate jdbcTemplate(DataSource dataSource, InMemoryAccountRepository accountRepository) {
+            return new RecordingJdbcTemplate(dataSource, accountRepository);
+        }
+
+        @Bean
+        public BatchTransferService batchTransferService() {
+            return new BatchTransferService();
+        }
+    }
+}
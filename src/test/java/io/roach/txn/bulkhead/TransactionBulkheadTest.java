@@ -0,0 +1,101 @@
+package io.roach.txn.bulkhead;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.roach.txn.annotation.TransactionHints.Priority;
+
+public class TransactionBulkheadTest {
+    @Test
+    public void whenQueued_thenAdmittedByPriority() throws Exception {
+        TransactionBulkhead bulkhead = new TransactionBulkhead(true, 1, 10, 10_000);
+        bulkhead.acquire(Priority.NORMAL, null);
+
+        List<Priority> admitted = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        Priority[] arrivals = {Priority.LOW, Priority.NORMAL, Priority.HIGH};
+        for (int i = 0; i < arrivals.length; i++) {
+            startWaiter(bulkhead, arrivals[i], admitted, done);
+            awaitQueued(bulkhead, i + 1);
+        }
+
+        bulkhead.release();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Priority.HIGH, admitted.get(0));
+        Assert.assertEquals(Priority.NORMAL, admitted.get(1));
+        Assert.assertEquals(Priority.LOW, admitted.get(2));
+    }
+
+    @Test(expected = BulkheadFullException.class)
+    public void whenQueueFull_thenRejectedImmediately() {
+        TransactionBulkhead bulkhead = new TransactionBulkhead(true, 1, 0, 10_000);
+        bulkhead.acquire(Priority.HIGH, null);
+        bulkhead.acquire(Priority.HIGH, null);
+    }
+
+    @Test
+    public void whenQueueFull_thenLowerPriorityDisplaced() throws Exception {
+        TransactionBulkhead bulkhead = new TransactionBulkhead(true, 1, 1, 10_000);
+        bulkhead.acquire(Priority.NORMAL, null);
+
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        Thread low = new Thread(() -> {
+            try {
+                bulkhead.acquire(Priority.LOW, null);
+            } catch (RuntimeException e) {
+                errors.add(e);
+            }
+        });
+        low.start();
+        awaitQueued(bulkhead, 1);
+
+        List<Priority> admitted = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        startWaiter(bulkhead, Priority.HIGH, admitted, done);
+
+        low.join(10_000);
+        Assert.assertEquals(1, errors.size());
+        Assert.assertTrue(errors.get(0) instanceof BulkheadFullException);
+
+        bulkhead.release();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Priority.HIGH, admitted.get(0));
+    }
+
+    @Test(expected = BulkheadTimeoutException.class)
+    public void whenNoSlotWithinTimeout_thenTimeout() {
+        TransactionBulkhead bulkhead = new TransactionBulkhead(true, 1, 10, 50);
+        bulkhead.acquire(Priority.NORMAL, null);
+        bulkhead.acquire(Priority.NORMAL, null);
+    }
+
+    private static void startWaiter(TransactionBulkhead bulkhead, Priority priority, List<Priority> admitted,
+                                    CountDownLatch done) {
+        new Thread(() -> {
+            bulkhead.acquire(priority, null);
+            admitted.add(priority);
+            bulkhead.release();
+            done.countDown();
+        }).start();
+    }
+
+    private static void awaitQueued(TransactionBulkhead bulkhead, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (queued(bulkhead) < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(expected, queued(bulkhead));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int queued(TransactionBulkhead bulkhead) {
+        return ((Map<String, Integer>) bulkhead.getState().get("queued")).values()
+                .stream().mapToInt(Integer::intValue).sum();
+    }
+}
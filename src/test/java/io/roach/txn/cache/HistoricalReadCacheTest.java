@@ -0,0 +1,61 @@
+package io.roach.txn.cache;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class HistoricalReadCacheTest {
+    private static final Object[] NO_ARGS = {};
+
+    @Test
+    public void whenTimeMovesPastWindow_thenEntryPurged() throws Exception {
+        HistoricalReadCache cache = new HistoricalReadCache(new SimpleMeterRegistry(), true, 1000, 100, 1 << 20);
+        Method method = Object.class.getMethod("toString");
+
+        // Read timestamp 5s behind, window [10000, 11000)
+        HistoricalReadCache.Key key = cache.keyOf(method, NO_ARGS, 10_200, 15_200);
+        cache.put(key, "a", 1);
+        Assert.assertEquals("a", cache.get(cache.keyOf(method, NO_ARGS, 10_999, 15_999)));
+        Assert.assertNull(cache.get(cache.keyOf(method, NO_ARGS, 11_000, 16_000)));
+
+        // Only the time of later puts purges (once per window)
+        cache.put(cache.keyOf(method, new Object[] {1}, 11_000, 16_000), "b", 1);
+        Assert.assertEquals(2, cache.size());
+        cache.put(cache.keyOf(method, new Object[] {2}, 11_300, 16_300), "c", 1);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertNull(cache.get(key));
+    }
+
+    @Test
+    public void whenOverByteCap_thenLeastRecentlyUsedEvicted() throws Exception {
+        HistoricalReadCache cache = new HistoricalReadCache(new SimpleMeterRegistry(), true, 1000, 100, 100);
+        Method method = Object.class.getMethod("toString");
+
+        cache.put(cache.keyOf(method, new Object[] {1}, 0, 1), "a", 60);
+        cache.put(cache.keyOf(method, new Object[] {2}, 0, 1), "b", 60);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals("b", cache.get(cache.keyOf(method, new Object[] {2}, 0, 1)));
+
+        cache.put(cache.keyOf(method, new Object[] {3}, 0, 1), "c", 101);
+        Assert.assertNull(cache.get(cache.keyOf(method, new Object[] {3}, 0, 1)));
+    }
+
+    @Test
+    public void whenCollections_thenElementsCounted() {
+        Assert.assertEquals(0, HistoricalReadCache.estimateBytes(null));
+        Assert.assertEquals(40 + 2 * 5, HistoricalReadCache.estimateBytes("alice"));
+
+        long one = HistoricalReadCache.estimateBytes(Collections.singletonList(new Object()));
+        long two = HistoricalReadCache.estimateBytes(Arrays.asList(new Object(), new Object()));
+        Assert.assertEquals(one + 8 + 128, two);
+        Assert.assertEquals(two, HistoricalReadCache.estimateBytes(
+                new PageImpl<>(Arrays.asList(new Object(), new Object()), PageRequest.of(0, 2), 10)));
+    }
+}
@@ -0,0 +1,164 @@
+package io.roach.txn.combining;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.roach.txn.aspect.AspectOverheadJmhBenchmark;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+import io.roach.txn.domain.NegativeBalanceException;
+import io.roach.txn.repository.InMemoryAccountRepository;
+
+public class TransferCombinerTest {
+    private static final int MAX_BATCH_SIZE = 4;
+
+    private AnnotationConfigApplicationContext context;
+
+    private TransferCombiner combiner;
+
+    private InMemoryAccountRepository repository;
+
+    @Before
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.register(AspectOverheadJmhBenchmark.BenchmarkConfiguration.class, CombiningConfiguration.class);
+        context.refresh();
+        combiner = context.getBean(TransferCombiner.class);
+        repository = context.getBean(InMemoryAccountRepository.class);
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void whenConcurrentSubmits_thenBatchesNeverExceedMaximum() throws Exception {
+        repository.set("alice", AccountType.asset, Money.of("1000"));
+
+        int threads = 16;
+        int transfersPerThread = 50;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<CompletableFuture<Void>>>> submitters = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                submitters.add(pool.submit(() -> {
+                    start.await();
+                    List<CompletableFuture<Void>> futures = new ArrayList<>();
+                    for (int j = 0; j < transfersPerThread; j++) {
+                        futures.add(combiner.submit("alice", AccountType.asset, Money.of("1")));
+                    }
+                    return futures;
+                }));
+            }
+            start.countDown();
+            for (Future<List<CompletableFuture<Void>>> submitter : submitters) {
+                for (CompletableFuture<Void> future : submitter.get(10, TimeUnit.SECONDS)) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        DistributionSummary batchSizes = context.getBean(MeterRegistry.class)
+                .get("txn.combining.batch.size").summary();
+        Assert.assertEquals(threads * transfersPerThread, (long) batchSizes.totalAmount());
+        Assert.assertTrue("max " + batchSizes.max(), batchSizes.max() <= MAX_BATCH_SIZE);
+        Assert.assertEquals(Money.of("1800"), repository.getBalance("alice"));
+    }
+
+    @Test
+    public void whenDifferentTypes_thenCombinedIntoOneFundsCheckByName() throws Exception {
+        repository.set("bob", AccountType.asset, Money.of("100"));
+        repository.set("bob", AccountType.expense, Money.ZERO);
+
+        CompletableFuture<Void> asset = combiner.submit("bob", AccountType.asset, Money.of("-80"));
+        CompletableFuture<Void> expense = combiner.submit("bob", AccountType.expense, Money.of("-80"));
+
+        asset.get(5, TimeUnit.SECONDS);
+        try {
+            expense.get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected insufficient funds");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof NegativeBalanceException);
+        }
+        Assert.assertEquals(1, context.getBean(MeterRegistry.class)
+                .get("txn.combining.batch.size").summary().count());
+        Assert.assertEquals(Money.of("20"), repository.getBalance("bob"));
+    }
+
+    @Test
+    public void whenAccountTypeMissing_thenBatchFails() throws Exception {
+        repository.set("dave", AccountType.asset, Money.of("100"));
+
+        try {
+            combiner.submit("dave", AccountType.expense, Money.of("50")).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected missing account");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof EmptyResultDataAccessException);
+        }
+        Assert.assertEquals(Money.of("100"), repository.getBalance("dave"));
+    }
+
+    @Test
+    public void whenFlushed_thenAppliedOnWorkerPool() throws Exception {
+        repository.set("carol", AccountType.asset, Money.of("10"));
+
+        combiner.submit("carol", AccountType.asset, Money.of("1")).get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(1, repository.getThreads().size());
+        String thread = repository.getThreads().iterator().next();
+        Assert.assertTrue(thread, thread.startsWith("worker"));
+    }
+
+    @Configuration
+    public static class CombiningConfiguration {
+        @Bean(destroyMethod = "shutdown")
+        public ScheduledExecutorService retryScheduler() {
+            return Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "timer"));
+        }
+
+        @Bean(destroyMethod = "shutdown")
+        public ExecutorService retryExecutor() {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(4, runnable -> new Thread(runnable, "worker-" + count.incrementAndGet()));
+        }
+
+        @Bean
+        public InMemoryAccountRepository accountRepository() {
+            return new InMemoryAccountRepository();
+        }
+
+        @Bean
+        public CombinedTransferService combinedTransferService() {
+            return new CombinedTransferService();
+        }
+
+        @Bean
+        public TransferCombiner transferCombiner(MeterRegistry meterRegistry) {
+            return new TransferCombiner(meterRegistry, 20, MAX_BATCH_SIZE);
+        }
+    }
+}
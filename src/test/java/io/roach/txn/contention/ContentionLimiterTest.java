@@ -0,0 +1,122 @@
+package io.roach.txn.contention;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.controller.TransactionExceptionHandler;
+
+public class ContentionLimiterTest {
+    @Test
+    public void whenSameKey_thenSameStripe() throws Exception {
+        ContentionLimiter limiter = new ContentionLimiter(true, 1024, 1000);
+        Assert.assertSame(resolve(limiter, "transfer", "alice"), resolve(limiter, "transfer", "alice"));
+        Assert.assertNotSame(resolve(limiter, "transfer", "alice"), resolve(limiter, "transfer", "bob"));
+        Assert.assertEquals(2, resolve(limiter, "transferPaired", "alice").availablePermits());
+    }
+
+    @Test
+    public void whenSingleStripe_thenAllKeysShareOneLock() throws Exception {
+        ContentionLimiter limiter = new ContentionLimiter(true, 1, 1000);
+        Assert.assertSame(resolve(limiter, "transfer", "alice"), resolve(limiter, "transfer", "bob"));
+        Assert.assertSame(resolve(limiter, "transfer", "alice"), resolve(limiter, "transfer", "carol"));
+    }
+
+    @Test
+    public void whenDisabledOrWithoutKey_thenNotLimited() throws Exception {
+        Assert.assertNull(resolve(new ContentionLimiter(false, 1024, 1000), "transfer", "alice"));
+        Assert.assertNull(resolve(new ContentionLimiter(true, 1024, 1000), "unkeyed", "alice"));
+    }
+
+    @Test
+    public void whenKeyHeld_thenTimeout() throws Exception {
+        ContentionLimiter limiter = new ContentionLimiter(true, 1024, 50);
+        ProceedingJoinPoint pjp = joinPoint("transfer", "alice");
+        Semaphore semaphore = resolve(limiter, "transfer", "alice");
+        limiter.acquire(semaphore, pjp);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> waiter = executor.submit(() -> limiter.acquire(semaphore, pjp));
+            try {
+                waiter.get(5, TimeUnit.SECONDS);
+                Assert.fail("Expected timeout");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof ContentionTimeoutException);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertFalse(limiter.tryAcquire(semaphore, TimeUnit.MILLISECONDS.toNanos(10), pjp));
+        try {
+            limiter.tryAcquire(semaphore, TimeUnit.MILLISECONDS.toNanos(50), pjp);
+            Assert.fail("Expected timeout");
+        } catch (ContentionTimeoutException expected) {
+        }
+
+        limiter.release(semaphore);
+        Assert.assertTrue(limiter.tryAcquire(semaphore, 0, pjp));
+    }
+
+    @Test
+    public void whenContentionTimeout_thenServiceUnavailable() {
+        Assert.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, new TransactionExceptionHandler()
+                .handleContentionTimeout(new ContentionTimeoutException("timeout")).getStatusCode());
+    }
+
+    private static Semaphore resolve(ContentionLimiter limiter, String methodName, String name) throws Exception {
+        ProceedingJoinPoint pjp = joinPoint(methodName, name);
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        return limiter.resolve(pjp, method.getAnnotation(TransactionBoundary.class));
+    }
+
+    private static ProceedingJoinPoint joinPoint(String methodName, String name) throws Exception {
+        Method method = Service.class.getMethod(methodName, String.class);
+        MethodSignature signature = (MethodSignature) Proxy.newProxyInstance(
+                MethodSignature.class.getClassLoader(), new Class<?>[] {MethodSignature.class},
+                (proxy, m, args) -> "getMethod".equals(m.getName()) ? method : method.toString());
+        Service target = new Service();
+        Object[] arguments = {name};
+        return (ProceedingJoinPoint) Proxy.newProxyInstance(
+                ProceedingJoinPoint.class.getClassLoader(), new Class<?>[] {ProceedingJoinPoint.class},
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getSignature":
+                            return signature;
+                        case "getTarget":
+                            return target;
+                        case "getArgs":
+                            return arguments;
+                        default:
+                            throw new UnsupportedOperationException(m.getName());
+                    }
+                });
+    }
+
+    public static class Service {
+        @TransactionBoundary(contentionKey = "#name")
+        public void transfer(String name) {
+        }
+
+        @TransactionBoundary(contentionKey = "#name", contentionPermits = 2)
+        public void transferPaired(String name) {
+        }
+
+        @TransactionBoundary
+        public void unkeyed(String name) {
+        }
+    }
+}
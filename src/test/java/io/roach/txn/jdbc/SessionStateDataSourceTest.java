@@ -0,0 +1,186 @@
+package io.roach.txn.jdbc;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+public class SessionStateDataSourceTest {
+    private final List<String> log = new ArrayList<>();
+
+    private SessionStateDataSource dataSource;
+
+    @Before
+    public void setUp() {
+        dataSource = new SessionStateDataSource(new SingleConnectionDataSource(),
+                Collections.singleton("application_name"));
+    }
+
+    @Test
+    public void whenSameVariablesOnNextCheckout_thenNothingSent() throws SQLException {
+        Map<String, String> variables = variables("statement_timeout", "'5s'", "application_name", "'test'");
+        hinted(variables);
+        hinted(variables);
+        hinted(variables);
+
+        Assert.assertEquals(Collections.singletonList(
+                "execute SET statement_timeout = '5s'; SET application_name = 'test'; "), log);
+    }
+
+    @Test
+    public void whenDirtyVariableNotSetByNextCheckout_thenResetCombinedWithNextSet() throws SQLException {
+        hinted(variables("statement_timeout", "'5s'", "application_name", "'test'"));
+        hinted(variables("application_name", "'test'", "default_int_size", "4"));
+
+        Assert.assertEquals(2, log.size());
+        Assert.assertEquals("execute RESET statement_timeout; SET default_int_size = 4; ", log.get(1));
+    }
+
+    @Test
+    public void whenCheckoutWithoutHints_thenResetOnceBeforeFirstStatement() throws SQLException {
+        hinted(variables("statement_timeout", "'5s'", "application_name", "'test'"));
+        log.clear();
+
+        unhinted();
+        unhinted();
+
+        Assert.assertEquals(3, log.size());
+        Assert.assertEquals("execute RESET statement_timeout; ", log.get(0));
+        Assert.assertEquals("prepareStatement SELECT 1", log.get(1));
+        Assert.assertEquals("prepareStatement SELECT 1", log.get(2));
+
+        // Retained variable still in effect
+        hinted(variables("application_name", "'test'"));
+        Assert.assertEquals(3, log.size());
+    }
+
+    @Test
+    public void whenRollback_thenOnlyVariablesSetInTransactionForgotten() throws SQLException {
+        hinted(variables("application_name", "'test'"));
+        log.clear();
+
+        try (Connection connection = dataSource.getConnection()) {
+            SessionState sessionState = connection.unwrap(SessionState.class);
+            execute(connection, sessionState.pendingStatements(variables("statement_timeout", "'5s'")));
+            sessionState.applied(variables("statement_timeout", "'5s'"));
+            connection.rollback();
+        }
+        hinted(variables("application_name", "'test'", "statement_timeout", "'5s'"));
+
+        Assert.assertEquals(2, log.size());
+        Assert.assertEquals("execute SET statement_timeout = '5s'; ", log.get(1));
+    }
+
+    @Test
+    public void whenResetRolledBack_thenResetAgain() throws SQLException {
+        hinted(variables("statement_timeout", "'5s'"));
+        log.clear();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.prepareStatement("SELECT 1");
+            connection.rollback();
+        }
+        unhinted();
+
+        Assert.assertEquals(4, log.size());
+        Assert.assertEquals("execute RESET statement_timeout; ", log.get(0));
+        Assert.assertEquals("execute RESET statement_timeout; ", log.get(2));
+    }
+
+    private void hinted(Map<String, String> variables) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            SessionState sessionState = connection.unwrap(SessionState.class);
+            String sql = sessionState.pendingStatements(variables);
+            if (!sql.isEmpty()) {
+                execute(connection, sql);
+            }
+            sessionState.applied(variables);
+            connection.commit();
+        }
+    }
+
+    private void unhinted() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.prepareStatement("SELECT 1");
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static Map<String, String> variables(String... namesAndValues) {
+        Map<String, String> variables = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            variables.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return variables;
+    }
+
+    /**
+     * Pool of one physical connection recording the statements sent.
+     */
+    private class SingleConnectionDataSource extends AbstractDataSource {
+        private final Connection connection;
+
+        private boolean autoCommit = true;
+
+        SingleConnectionDataSource() {
+            Statement statement = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Statement.class}, (proxy, method, args) -> {
+                        if ("execute".equals(method.getName())) {
+                            log.add("execute " + args[0]);
+                        }
+                        return method.getReturnType() == boolean.class ? false : null;
+                    });
+            connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "createStatement":
+                                return statement;
+                            case "prepareStatement":
+                                log.add("prepareStatement " + args[0]);
+                                return null;
+                            case "setAutoCommit":
+                                autoCommit = (Boolean) args[0];
+                                return null;
+                            case "getAutoCommit":
+                                return autoCommit;
+                            case "close":
+                                autoCommit = true;
+                                return null;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            default:
+                                return method.getReturnType() == boolean.class ? false : null;
+                        }
+                    });
+        }
+
+        @Override
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return connection;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io.roach.txn.ledger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.roach.txn.aspect.AspectOverheadJmhBenchmark;
+import io.roach.txn.batch.BatchTransferServiceTest;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.LedgerEntryEntity;
+import io.roach.txn.domain.Money;
+import io.roach.txn.domain.NegativeBalanceException;
+import io.roach.txn.repository.InMemoryAccountRepository;
+import io.roach.txn.repository.LedgerRepository;
+
+public class LedgerTransferServiceTest {
+    private AnnotationConfigApplicationContext context;
+
+    private LedgerTransferService transferService;
+
+    private LedgerCompactionService compactionService;
+
+    private InMemoryAccountRepository repository;
+
+    private InMemoryLedgerRepository ledger;
+
+    private BatchTransferServiceTest.RecordingJdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() {
+        repository = new InMemoryAccountRepository();
+        ledger = new InMemoryLedgerRepository(repository);
+
+        context = new AnnotationConfigApplicationContext();
+        // Not proxied, so that the ledger can be inspected outside of transactions
+        context.getBeanFactory().registerSingleton("accountRepository", repository);
+        context.getBeanFactory().registerSingleton("ledgerRepository", ledger);
+        context.register(AspectOverheadJmhBenchmark.BenchmarkConfiguration.class, LedgerConfiguration.class);
+        context.refresh();
+        transferService = context.getBean(LedgerTransferService.class);
+        compactionService = context.getBean(LedgerCompactionService.class);
+        jdbcTemplate = (BatchTransferServiceTest.RecordingJdbcTemplate) context.getBean(JdbcTemplate.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        repository.set("alice", AccountType.asset, Money.of("100"));
+        repository.set("alice", AccountType.expense, Money.ZERO);
+        repository.set("bob", AccountType.asset, Money.of("100"));
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void whenAppended_thenPendingUntilCompacted() {
+        transfer("alice", AccountType.asset, "50");
+        transfer("alice", AccountType.expense, "-20");
+
+        Assert.assertEquals(Money.of("100"), repository.getBalance("alice"));
+        Assert.assertEquals(Money.of("30"), ledger.getPendingAmount("alice"));
+
+        Assert.assertEquals(2, compactionService.compact(10));
+        Assert.assertEquals(Money.of("130"), repository.getBalance("alice"));
+        Assert.assertEquals(Money.ZERO, ledger.getPendingAmount("alice"));
+    }
+
+    @Test
+    public void whenWithdrawalNotCoveredByCheckpointAndPending_thenRejected() {
+        transfer("alice", AccountType.asset, "50");
+        transfer("alice", AccountType.asset, "-140");
+        try {
+            transfer("alice", AccountType.asset, "-20");
+            Assert.fail("Expected insufficient funds");
+        } catch (NegativeBalanceException e) {
+            Assert.assertEquals(2, ledger.entries.size());
+        }
+    }
+
+    @Test
+    public void whenDepositToMissingAccount_thenNotFoundAndNothingAppended() {
+        for (String name : Arrays.asList("carol", "bob")) {
+            try {
+                transfer(name, AccountType.expense, "10");
+                Assert.fail("Expected missing account");
+            } catch (EmptyResultDataAccessException e) {
+                Assert.assertEquals("No account " + name + " of type expense", e.getMessage());
+            }
+        }
+        Assert.assertTrue(ledger.entries.isEmpty());
+    }
+
+    @Test
+    public void whenCompacted_thenOneUpdatePerAccountAndTypeInBatches() {
+        transfer("alice", AccountType.asset, "1");
+        transfer("bob", AccountType.asset, "2");
+        transfer("alice", AccountType.asset, "3");
+        transfer("bob", AccountType.asset, "4");
+
+        Assert.assertEquals(3, compactionService.compact(3));
+        Assert.assertEquals(Arrays.asList("alice/asset", "bob/asset"), jdbcTemplate.updates);
+        Assert.assertEquals(Money.of("104"), repository.getBalance("alice"));
+        Assert.assertEquals(Money.of("102"), repository.getBalance("bob"));
+
+        Assert.assertEquals(1, compactionService.compact(3));
+        Assert.assertEquals(Money.of("106"), repository.getBalance("bob"));
+        Assert.assertEquals(0, compactionService.compact(3));
+    }
+
+    @Test
+    public void whenAccountMissingOnCompaction_thenFailsRatherThanDropping() {
+        ledger.entries.add(entry("carol", AccountType.asset, "10"));
+        try {
+            compactionService.compact(10);
+            Assert.fail("Expected missing account");
+        } catch (EmptyResultDataAccessException e) {
+            Assert.assertEquals("No account carol of type asset", e.getMessage());
+        }
+    }
+
+    private void transfer(String name, AccountType type, String amount) {
+        transactionTemplate.execute(status -> {
+            transferService.transfer(name, type, Money.of(amount));
+            return null;
+        });
+    }
+
+    private static LedgerEntryEntity entry(String name, AccountType type, String amount) {
+        LedgerEntryEntity entry = new LedgerEntryEntity();
+        entry.setName(name);
+        entry.setType(type);
+        entry.setAmount(Money.of(amount));
+        return entry;
+    }
+
+    /**
+     * Ledger on top of the in-memory accounts. Unlike the SQL, entries of missing accounts
+     * are removed for folding, to exercise the check of the compaction.
+     */
+    public static class InMemoryLedgerRepository extends LedgerRepository {
+        final List<LedgerEntryEntity> entries = Collections.synchronizedList(new ArrayList<>());
+
+        private final InMemoryAccountRepository repository;
+
+        InMemoryLedgerRepository(InMemoryAccountRepository repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public int append(String name, AccountType type, Money amount) {
+            if (!repository.exists(name, type)) {
+                return 0;
+            }
+            entries.add(entry(name, type, amount.toString()));
+            return 1;
+        }
+
+        @Override
+        public int appendConditionally(String name, AccountType type, Money amount) {
+            if (!repository.exists(name, type)
+                    || repository.getBalance(name).plus(getPendingAmount(name)).plus(amount).isNegative()) {
+                return 0;
+            }
+            entries.add(entry(name, type, amount.toString()));
+            return 1;
+        }
+
+        @Override
+        public Money getPendingAmount(String name) {
+            synchronized (entries) {
+                return entries.stream()
+                        .filter(entry -> entry.getName().equals(name))
+                        .map(LedgerEntryEntity::getAmount)
+                        .reduce(Money.ZERO, Money::plus);
+            }
+        }
+
+        @Override
+        public List<LedgerEntryEntity> removeOldest(int limit) {
+            synchronized (entries) {
+                List<LedgerEntryEntity> oldest = new ArrayList<>(entries.subList(0, Math.min(limit, entries.size())));
+                entries.removeAll(oldest);
+                return oldest;
+            }
+        }
+    }
+
+    @Configuration
+    public static class LedgerConfiguration {
+        @Bean
+        public JdbcTemplate jdbcTemplate(DataSource dataSource, InMemoryAccountRepository accountRepository) {
+            return new BatchTransferServiceTest.RecordingJdbcTemplate(dataSource, accountRepository);
+        }
+
+        @Bean
+        public LedgerTransferService ledgerTransferService() {
+            return new LedgerTransferService();
+        }
+
+        @Bean
+        public LedgerCompactionService ledgerCompactionService() {
+            return new LedgerCompactionService();
+        }
+    }
+}
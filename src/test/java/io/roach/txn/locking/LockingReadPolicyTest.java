@@ -0,0 +1,85 @@
+package io.roach.txn.locking;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LockingReadPolicyTest {
+    @Test
+    public void whenAbortRatioReachesUpperThreshold_thenLocking() {
+        LockingReadPolicy.MethodState state = state(new LockingReadPolicy(true, 10, 0.2, 0.05, 0, 0));
+        record(state, 10, 1);
+        Assert.assertEquals(ReadMode.OPTIMISTIC, state.getMode());
+        record(state, 10, 2);
+        Assert.assertEquals(ReadMode.LOCKING, state.getMode());
+    }
+
+    @Test
+    public void whenAbortRatioBetweenThresholds_thenModeKept() {
+        LockingReadPolicy.MethodState state = state(new LockingReadPolicy(true, 10, 0.2, 0.05, 0, 0));
+        record(state, 10, 5);
+        Assert.assertEquals(ReadMode.LOCKING, state.getMode());
+        record(state, 10, 1);
+        Assert.assertEquals(ReadMode.LOCKING, state.getMode());
+        record(state, 10, 0);
+        Assert.assertEquals(ReadMode.OPTIMISTIC, state.getMode());
+    }
+
+    @Test
+    public void whenWithinDwellTime_thenLockingKept() {
+        LockingReadPolicy.MethodState state = state(new LockingReadPolicy(true, 10, 0.2, 0.05, 60_000, 60_000));
+        record(state, 10, 5);
+        record(state, 10, 0);
+        Assert.assertEquals(ReadMode.LOCKING, state.getMode());
+    }
+
+    @Test
+    public void whenLockingDoesNotReduceAborts_thenOptimisticForDwellTime() {
+        AtomicLong nanoTime = new AtomicLong();
+        LockingReadPolicy policy = new LockingReadPolicy(true, 10, 0.2, 0.05, 50, 60_000);
+        policy.setNanoClock(nanoTime::get);
+        LockingReadPolicy.MethodState state = state(policy);
+        record(state, 10, 5);
+        Assert.assertEquals(ReadMode.LOCKING, state.getMode());
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        record(state, 10, 6);
+        Assert.assertEquals(ReadMode.OPTIMISTIC, state.getMode());
+        record(state, 10, 9);
+        Assert.assertEquals(ReadMode.OPTIMISTIC, state.getMode());
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        record(state, 10, 9);
+        Assert.assertEquals(ReadMode.LOCKING, state.getMode());
+    }
+
+    @Test
+    public void whenNotAdaptive_thenAlwaysOptimistic() {
+        LockingReadPolicy policy = new LockingReadPolicy(true, 10, 0.2, 0.05, 0, 0);
+        LockingReadPolicy.MethodState state = policy.new MethodState("readOnly", false);
+        record(state, 10, 10);
+        Assert.assertEquals(ReadMode.OPTIMISTIC, state.getMode());
+    }
+
+    @Test
+    public void whenBound_thenLockingReadOnThisThread() {
+        ReadMode previous = LockingReadPolicy.setCurrentMode(ReadMode.LOCKING);
+        try {
+            Assert.assertNull(previous);
+            Assert.assertTrue(LockingReadPolicy.isLockingRead());
+        } finally {
+            LockingReadPolicy.setCurrentMode(previous);
+        }
+        Assert.assertFalse(LockingReadPolicy.isLockingRead());
+    }
+
+    private static LockingReadPolicy.MethodState state(LockingReadPolicy policy) {
+        return policy.new MethodState("test", true);
+    }
+
+    private static void record(LockingReadPolicy.MethodState state, int attempts, int aborts) {
+        for (int i = 0; i < attempts; i++) {
+            state.recordAttempt(i < aborts);
+        }
+    }
+}
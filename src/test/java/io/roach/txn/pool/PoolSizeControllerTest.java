@@ -0,0 +1,177 @@
+package io.roach.txn.pool;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.roach.txn.bulkhead.TransactionBulkhead;
+
+public class PoolSizeControllerTest {
+    private final AtomicLong nanos = new AtomicLong();
+
+    private AnnotationConfigApplicationContext context;
+
+    private PoolSizeController controller;
+
+    private HikariDataSource dataSource;
+
+    private QueueingBulkhead bulkhead;
+
+    private MeterRegistry meterRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new AnnotationConfigApplicationContext(PoolConfiguration.class);
+        controller = context.getBean(PoolSizeController.class);
+        dataSource = context.getBean(HikariDataSource.class);
+        bulkhead = context.getBean(QueueingBulkhead.class);
+        meterRegistry = context.getBean(MeterRegistry.class);
+
+        controller.setNanoClock(nanos::get);
+        controller.start();
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void whenSaturated_thenGrowsByStepUpToMaximum() {
+        bulkhead.queueLength = 3;
+
+        adjust(100, 100);
+        Assert.assertEquals(10, dataSource.getMaximumPoolSize());
+        Assert.assertEquals(10, bulkhead.getMaxConcurrent());
+
+        adjust(120, 120);
+        Assert.assertEquals(12, dataSource.getMaximumPoolSize());
+        adjust(150, 150);
+        Assert.assertEquals(12, dataSource.getMaximumPoolSize());
+        Assert.assertEquals(12, bulkhead.getMaxConcurrent());
+    }
+
+    @Test
+    public void whenNoGainFromIncrease_thenHolds() {
+        bulkhead.queueLength = 3;
+
+        adjust(100, 100);
+        adjust(102, 102);
+        Assert.assertEquals(10, dataSource.getMaximumPoolSize());
+        Assert.assertEquals("saturated, no gain from last increase", lastReason());
+    }
+
+    @Test
+    public void whenThroughputDropsAfterResize_thenReverted() {
+        bulkhead.queueLength = 3;
+
+        adjust(100, 100);
+        Assert.assertEquals(10, dataSource.getMaximumPoolSize());
+        adjust(80, 80);
+        Assert.assertEquals(8, dataSource.getMaximumPoolSize());
+        Assert.assertEquals("throughput dropped after resize", lastReason());
+    }
+
+    @Test
+    public void whenAbortRatioAboveLimit_thenShrinksDownToMinimum() {
+        bulkhead.queueLength = 3;
+
+        // 50 retries in 150 attempts
+        adjust(100, 150);
+        Assert.assertEquals(6, dataSource.getMaximumPoolSize());
+        Assert.assertEquals(6, bulkhead.getMaxConcurrent());
+        adjust(100, 150);
+        Assert.assertEquals(4, dataSource.getMaximumPoolSize());
+        adjust(100, 150);
+        Assert.assertEquals(4, dataSource.getMaximumPoolSize());
+        Assert.assertEquals(4, dataSource.getMinimumIdle());
+    }
+
+    @Test
+    public void whenTooFewCalls_thenUnchangedAndLastResizeStillJudged() {
+        bulkhead.queueLength = 3;
+
+        adjust(100, 100);
+        adjust(10, 10);
+        Assert.assertEquals(10, dataSource.getMaximumPoolSize());
+        Assert.assertEquals("idle", lastReason());
+
+        // Compared against the interval before the idle one
+        adjust(80, 80);
+        Assert.assertEquals(8, dataSource.getMaximumPoolSize());
+    }
+
+    /**
+     * Records one second worth of calls with the given total number of attempts.
+     */
+    private void adjust(int calls, int attempts) {
+        for (int i = 0; i < calls; i++) {
+            meterRegistry.timer("txn.boundary.calls", "outcome", "success").record(1, TimeUnit.MILLISECONDS);
+            meterRegistry.summary("txn.boundary.attempts").record(i == 0 ? attempts - calls + 1 : 1);
+        }
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        controller.adjust();
+    }
+
+    @SuppressWarnings("unchecked")
+    private String lastReason() {
+        List<Map<String, Object>> decisions = (List<Map<String, Object>>) controller.getState().get("decisions");
+        return (String) decisions.get(0).get("reason");
+    }
+
+    /**
+     * Reports a fixed number of queued transactions.
+     */
+    public static class QueueingBulkhead extends TransactionBulkhead {
+        volatile int queueLength;
+
+        QueueingBulkhead(int maxConcurrent) {
+            super(true, maxConcurrent, 256, 5000);
+        }
+
+        @Override
+        public int getQueueLength() {
+            return queueLength;
+        }
+    }
+
+    @Configuration
+    public static class PoolConfiguration {
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        // Never started, only its configured pool size is used
+        @Bean
+        public HikariDataSource dataSource() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setMaximumPoolSize(8);
+            dataSource.setMinimumIdle(8);
+            return dataSource;
+        }
+
+        @Bean
+        public QueueingBulkhead transactionBulkhead() {
+            return new QueueingBulkhead(8);
+        }
+
+        @Bean
+        public PoolSizeController poolSizeController() {
+            return new PoolSizeController(TimeUnit.HOURS.toMillis(1), 4, 12, 2, 0.1, 0.05, 50);
+        }
+    }
+}
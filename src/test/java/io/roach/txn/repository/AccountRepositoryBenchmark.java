@@ -0,0 +1,114 @@
+package io.roach.txn.repository;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+import io.roach.txn.Application;
+import io.roach.txn.controller.AccountController;
+import io.roach.txn.controller.TransferMode;
+import io.roach.txn.controller.TransferRequest;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+
+/**
+ * Compares the JPA and JDBC account repositories by latency and heap allocations per
+ * request, calling the balance and (conditional) transfer boundaries in-process on a
+ * single thread. Requires a local PostgreSQL database, see {@code application-psql.yml}.
+ */
+public class AccountRepositoryBenchmark {
+    private static final int WARMUP = 2000;
+
+    private static final int ITERATIONS = 5000;
+
+    // Keeps the configurations of other tests out of the component scan
+    private static final ApplicationContextInitializer<ConfigurableApplicationContext> TEST_CLASSES_EXCLUDED =
+            context -> context.getBeanFactory().registerSingleton("testClassesExcludeFilter", new TypeExcludeFilter() {
+                @Override
+                public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory)
+                        throws IOException {
+                    return metadataReader.getResource().getURL().toString().contains("/test-classes/");
+                }
+            });
+
+    private final com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void compareRepositories() {
+        for (String profiles : new String[] {"psql", "psql,jdbc"}) {
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                    .web(WebApplicationType.SERVLET)
+                    .initializers(TEST_CLASSES_EXCLUDED)
+                    .properties("server.port=0", "spring.main.banner-mode=off",
+                            "logging.level.root=WARN", "roach.txn.contention.enabled=false")
+                    .run("--spring.profiles.active=" + profiles)) {
+                AccountController controller = context.getBean(AccountController.class);
+                TransferRequest request = TransferRequest.builder()
+                        .setName("alice")
+                        .setAccountType(AccountType.asset)
+                        .setAmount(Money.of("0.01"))
+                        .build();
+
+                report(profiles, "balance", measure(() -> controller.getBalance("alice")));
+                report(profiles, "transfer", measure(() -> controller.transfer(request, TransferMode.CONDITIONAL)));
+            }
+        }
+    }
+
+    private Result measure(Supplier<?> call) {
+        for (int i = 0; i < WARMUP; i++) {
+            call.get();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long[] latencies = new long[ITERATIONS];
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            call.get();
+            latencies[i] = System.nanoTime() - start;
+        }
+
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        Arrays.sort(latencies);
+        return new Result(latencies, allocated / ITERATIONS);
+    }
+
+    private void report(String profiles, String operation, Result result) {
+        System.out.printf("%-10s %-9s mean %7.1f us  p50 %7.1f us  p99 %7.1f us  %8d bytes/op%n",
+                profiles, operation, result.mean() / 1000.0,
+                result.percentile(0.5) / 1000.0, result.percentile(0.99) / 1000.0,
+                result.bytesPerOp);
+    }
+
+    private static class Result {
+        final long[] sortedLatencies;
+
+        final long bytesPerOp;
+
+        Result(long[] sortedLatencies, long bytesPerOp) {
+            this.sortedLatencies = sortedLatencies;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        double mean() {
+            return Arrays.stream(sortedLatencies).average().orElse(0);
+        }
+
+        long percentile(double p) {
+            return sortedLatencies[(int) Math.min(sortedLatencies.length - 1, p * sortedLatencies.length)];
+        }
+    }
+}
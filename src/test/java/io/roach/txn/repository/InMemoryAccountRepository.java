@@ -0,0 +1,89 @@
+package io.roach.txn.repository;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import io.roach.txn.domain.AccountEntity;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+
+/**
+ * Balances by name and type for tests of services on top of the repository, supporting
+ * only the balance reads and updates.
+ */
+public class InMemoryAccountRepository implements AccountRepository {
+    private final Map<String, Map<AccountType, Money>> balances = new HashMap<>();
+
+    private final Set<String> threads = new CopyOnWriteArraySet<>();
+
+    public synchronized void set(String name, AccountType type, Money balance) {
+        balances.computeIfAbsent(name, n -> new EnumMap<>(AccountType.class)).put(type, balance);
+    }
+
+    public synchronized boolean exists(String name, AccountType type) {
+        return balances.containsKey(name) && balances.get(name).containsKey(type);
+    }
+
+    /**
+     * @return names of the threads that read balances
+     */
+    public Set<String> getThreads() {
+        return threads;
+    }
+
+    @Override
+    public synchronized Money getBalance(String name) {
+        threads.add(Thread.currentThread().getName());
+        Map<AccountType, Money> byType = balances.get(name);
+        return byType == null ? null : byType.values().stream().reduce(Money.ZERO, Money::plus);
+    }
+
+    @Override
+    public synchronized Map<String, Money> getBalances(Collection<String> names) {
+        Map<String, Money> rv = new HashMap<>();
+        names.stream().filter(balances::containsKey).forEach(name -> rv.put(name, getBalance(name)));
+        return rv;
+    }
+
+    @Override
+    public synchronized int updateBalance(String name, AccountType type, Money amount) {
+        if (exists(name, type)) {
+            balances.get(name).merge(type, amount, Money::plus);
+            return 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public Page<AccountEntity> findAll(Pageable pageable) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public AccountEntity getOne(Long id) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Slice<AccountEntity> findByIdGreaterThanOrderByIdAsc(Long lastId, Pageable pageable) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int updateBalanceConditionally(String name, AccountType type, Money amount) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void resetBalances(Money balance) {
+        throw new UnsupportedOperationException();
+    }
+}
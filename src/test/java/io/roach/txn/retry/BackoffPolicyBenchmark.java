@@ -0,0 +1,152 @@
+package io.roach.txn.retry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import io.roach.txn.annotation.TransactionBoundary;
+import io.roach.txn.aspect.AspectOverheadJmhBenchmark;
+
+/**
+ * In-process simulation of the {@code BankStressTest} contention pattern: 200 transfers
+ * alternating between two hot accounts, executed by 2x CPU worker threads through the
+ * {@link io.roach.txn.aspect.RetryableTransactionalAspect}. Each transfer reads a row version,
+ * spends some time "in the transaction" and commits only if the version is unchanged (first
+ * committer wins), otherwise it throws a transient error that the aspect retries with the
+ * globally configured backoff strategy under test.
+ * <p>
+ * Delays are scaled down 10x compared to the defaults to keep the run short.
+ */
+public class BackoffPolicyBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(BackoffPolicyBenchmark.class);
+
+    private static final int TRANSFERS = 200;
+
+    @Test
+    public void compareBackoffPolicies() throws Exception {
+        // One warning per retry would dominate the run
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).getLogger("io.roach.txn.aspect").setLevel(Level.ERROR);
+
+        for (TransactionBoundary.Backoff strategy : new TransactionBoundary.Backoff[] {
+                TransactionBoundary.Backoff.EXPONENTIAL,
+                TransactionBoundary.Backoff.FULL_JITTER,
+                TransactionBoundary.Backoff.DECORRELATED_JITTER,
+                TransactionBoundary.Backoff.FIXED}) {
+            Result result = run(strategy);
+            logger.info(String.format("%-20s %8.1f tx/s %6d aborts %4d gave up",
+                    strategy, result.throughput(), result.aborts, result.failures));
+            Assert.assertEquals(TRANSFERS, result.commits + result.failures);
+        }
+    }
+
+    private Result run(TransactionBoundary.Backoff strategy) throws Exception {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(AspectOverheadJmhBenchmark.BenchmarkConfiguration.class, ContentionConfiguration.class);
+        context.refresh();
+
+        BackoffProperties backoffProperties = context.getBean(BackoffProperties.class);
+        backoffProperties.setStrategy(strategy);
+        backoffProperties.setInitialMillis(15);
+        backoffProperties.setMultiplier(1.5);
+        backoffProperties.setMaxMillis(100);
+
+        HotRowService service = context.getBean(HotRowService.class);
+        final AtomicLong[] rows = {new AtomicLong(), new AtomicLong()};
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < TRANSFERS; i++) {
+            final AtomicLong row = rows[i % 2];
+            futures.add(pool.submit(() -> {
+                try {
+                    service.transfer(row);
+                    commits.incrementAndGet();
+                } catch (ConcurrencyFailureException e) {
+                    failures.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        context.close();
+
+        return new Result(commits.get(), service.getAborts(), failures.get(), elapsed);
+    }
+
+    public static class HotRowService {
+        private final AtomicInteger aborts = new AtomicInteger();
+
+        public int getAborts() {
+            return aborts.get();
+        }
+
+        @TransactionBoundary
+        public void transfer(AtomicLong row) {
+            long version = row.get();
+            try {
+                Thread.sleep(2 + ThreadLocalRandom.current().nextInt(4));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!row.compareAndSet(version, version + 1)) {
+                aborts.incrementAndGet();
+                throw new ConcurrencyFailureException("restart transaction");
+            }
+        }
+    }
+
+    @Configuration
+    public static class ContentionConfiguration {
+        @Bean
+        public HotRowService hotRowService() {
+            return new HotRowService();
+        }
+    }
+
+    private static class Result {
+        final int commits;
+
+        final int aborts;
+
+        final int failures;
+
+        final long elapsedNanos;
+
+        Result(int commits, int aborts, int failures, long elapsedNanos) {
+            this.commits = commits;
+            this.aborts = aborts;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double throughput() {
+            return commits / (elapsedNanos / 1_000_000_000.0);
+        }
+    }
+}
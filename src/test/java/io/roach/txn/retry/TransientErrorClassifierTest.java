@@ -0,0 +1,69 @@
+package io.roach.txn.retry;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+
+import org.hibernate.exception.GenericJDBCException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.jpa.JpaSystemException;
+import org.springframework.transaction.TransactionSystemException;
+
+public class TransientErrorClassifierTest {
+    private TransientErrorClassifier classifier = new TransientErrorClassifier();
+
+    @Test
+    public void whenSerializationFailure_thenTransient() {
+        Assert.assertTrue(classifier.isTransient(jpaException(new SQLException("retry", "40001"))));
+        Assert.assertTrue(classifier.isTransient(jpaException(new SQLException("deadlock", "40P01"))));
+        Assert.assertTrue(classifier.isTransient(jpaException(new SQLException("connection reset", "08006"))));
+    }
+
+    @Test
+    public void whenConnectionLost_thenConnectionError() {
+        Assert.assertTrue(classifier.isConnectionError(
+                new TransactionSystemException("commit", new SQLException("connection reset", "08006"))));
+        Assert.assertFalse(classifier.isConnectionError(jpaException(new SQLException("retry", "40001"))));
+        Assert.assertFalse(classifier.isConnectionError(new CannotAcquireLockException("lock")));
+    }
+
+    @Test
+    public void whenOtherSqlState_thenNotTransient() {
+        Assert.assertFalse(classifier.isTransient(jpaException(new SQLException("duplicate key", "23505"))));
+        Assert.assertFalse(classifier.isTransient(new DataIntegrityViolationException("constraint",
+                new SQLException("duplicate key", "23505"))));
+        Assert.assertFalse(classifier.isTransient(new JpaSystemException(new RuntimeException("boom"))));
+    }
+
+    @Test
+    public void whenCockroachRetryErrorWithoutSqlState_thenTransient() {
+        Assert.assertTrue(classifier.isTransient(new UndeclaredThrowableException(
+                new SQLException("restart transaction: TransactionRetryWithProtoRefreshError: WriteTooOldError"))));
+    }
+
+    @Test
+    public void whenBatchUpdateFails_thenNextExceptionDecides() {
+        BatchUpdateException ex = new BatchUpdateException();
+        ex.setNextException(new SQLException("retry", "40001"));
+        Assert.assertTrue(classifier.isTransient(ex));
+    }
+
+    @Test
+    public void whenTransientTypeWithoutSqlException_thenTransient() {
+        Assert.assertTrue(classifier.isTransient(new CannotAcquireLockException("lock")));
+        Assert.assertFalse(classifier.isTransient(new IllegalStateException("nope")));
+    }
+
+    @Test
+    public void whenRetryBudgetExhausted_thenNotTransient() {
+        Assert.assertFalse(classifier.isTransient(new RetryBudgetExhaustedException("exhausted", 1,
+                jpaException(new SQLException("retry", "40001")))));
+    }
+
+    private static JpaSystemException jpaException(SQLException cause) {
+        return new JpaSystemException(new GenericJDBCException("could not execute", cause));
+    }
+}
@@ -0,0 +1,94 @@
+package io.roach.txn.sharding;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.dao.EmptyResultDataAccessException;
+
+import io.roach.txn.domain.AccountShard;
+import io.roach.txn.domain.AccountType;
+import io.roach.txn.domain.Money;
+import io.roach.txn.domain.NegativeBalanceException;
+
+public class ShardedTransferServiceTest {
+    @Test
+    public void whenRebalanced_thenEveryShardHoldsItsShareAndTypeTotalsKept() {
+        List<AccountShard> rows = Arrays.asList(
+                shard(0, AccountType.asset, "10"),
+                shard(0, AccountType.expense, "5"),
+                shard(1, AccountType.asset, "0"),
+                shard(1, AccountType.expense, "3"),
+                shard(2, AccountType.asset, "40"),
+                shard(2, AccountType.expense, "0"));
+
+        // Total 10 + 5 + 3 + 40 + 2 pending - 18 = 42, a share of 14 per shard
+        List<AccountShard> changed = ShardedTransferService.rebalancedBalances(rows, AccountType.asset,
+                Money.of("-18"), Money.of("2"));
+
+        Assert.assertEquals(3, changed.size());
+        assertShard(changed.get(0), 0, AccountType.asset, "7");
+        assertShard(changed.get(1), 1, AccountType.asset, "11");
+        assertShard(changed.get(2), 2, AccountType.asset, "14");
+
+        Money assetTotal = Money.ZERO;
+        for (AccountShard row : changed) {
+            assetTotal = assetTotal.plus(row.getBalance());
+        }
+        Assert.assertEquals(Money.of("32"), assetTotal);
+    }
+
+    @Test
+    public void whenShareInCents_thenRemainderOnLowestShard() {
+        List<AccountShard> rows = Arrays.asList(
+                shard(1, AccountType.asset, "0.00"),
+                shard(2, AccountType.asset, "0.00"),
+                shard(3, AccountType.asset, "1.01"));
+
+        List<AccountShard> changed = ShardedTransferService.rebalancedBalances(rows, AccountType.asset,
+                Money.of("-0.01"), Money.ZERO);
+
+        assertShard(changed.get(0), 1, AccountType.asset, "0.34");
+        assertShard(changed.get(1), 2, AccountType.asset, "0.33");
+        assertShard(changed.get(2), 3, AccountType.asset, "0.33");
+    }
+
+    @Test
+    public void whenShardAlreadyAtShare_thenNotUpdated() {
+        List<AccountShard> rows = Arrays.asList(
+                shard(0, AccountType.asset, "6"),
+                shard(1, AccountType.asset, "4"));
+
+        List<AccountShard> changed = ShardedTransferService.rebalancedBalances(rows, AccountType.asset,
+                Money.of("-2"), Money.ZERO);
+
+        Assert.assertEquals(1, changed.size());
+        assertShard(changed.get(0), 0, AccountType.asset, "4");
+    }
+
+    @Test(expected = NegativeBalanceException.class)
+    public void whenTotalDoesNotCover_thenRejected() {
+        ShardedTransferService.rebalancedBalances(Arrays.asList(
+                shard(0, AccountType.asset, "5"),
+                shard(1, AccountType.expense, "5")),
+                AccountType.asset, Money.of("-10.01"), Money.ZERO);
+    }
+
+    @Test(expected = EmptyResultDataAccessException.class)
+    public void whenNoRowsOfType_thenMissingAccount() {
+        ShardedTransferService.rebalancedBalances(Collections.singletonList(shard(0, AccountType.asset, "5")),
+                AccountType.expense, Money.of("-1"), Money.ZERO);
+    }
+
+    private static AccountShard shard(int shard, AccountType type, String balance) {
+        return new AccountShard("alice", type, shard, Money.of(balance));
+    }
+
+    private static void assertShard(AccountShard row, int shard, AccountType type, String balance) {
+        Assert.assertEquals(shard, row.getShard());
+        Assert.assertEquals(type, row.getType());
+        Assert.assertEquals(Money.of(balance), row.getBalance());
+    }
+}
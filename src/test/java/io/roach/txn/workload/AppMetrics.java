@@ -0,0 +1,79 @@
+package io.roach.txn.workload;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Snapshot of the transaction boundary meters scraped from the app's metrics actuator.
+ * Deltas between two snapshots give the throughput, retries and outcomes of a run as
+ * seen by the app.
+ */
+class AppMetrics {
+    private final Map<String, Double> values = new LinkedHashMap<>();
+
+    private AppMetrics() {
+    }
+
+    static AppMetrics scrape(RestTemplate restTemplate, String baseUrl) {
+        AppMetrics metrics = new AppMetrics();
+        // Calls and attempts from the same meter, consistent even when scraped under load
+        metrics.scrape(restTemplate, baseUrl, "txn.boundary.attempts", "", "calls", "attempts");
+        for (String outcome : new String[] {"non_transient_failure", "exhausted"}) {
+            metrics.scrape(restTemplate, baseUrl, "txn.boundary.calls", "?tag=outcome:" + outcome,
+                    "calls." + outcome, null);
+        }
+        metrics.scrape(restTemplate, baseUrl, "txn.boundary.savepoint.rollbacks", "", "savepoint.rollbacks", null);
+        return metrics;
+    }
+
+    private void scrape(RestTemplate restTemplate, String baseUrl, String name, String query,
+                        String countKey, String totalKey) {
+        values.put(countKey, 0.0);
+        if (totalKey != null) {
+            values.put(totalKey, 0.0);
+        }
+
+        String body;
+        try {
+            body = restTemplate.getForObject(baseUrl + "/actuator/metrics/" + name + query, String.class);
+        } catch (HttpClientErrorException.NotFound e) {
+            return; // Not registered until first recorded
+        }
+        try {
+            for (JsonNode measurement : new ObjectMapper().readTree(body).path("measurements")) {
+                String statistic = measurement.path("statistic").asText();
+                if ("COUNT".equals(statistic)) {
+                    values.put(countKey, measurement.path("value").asDouble());
+                } else if ("TOTAL".equals(statistic) && totalKey != null) {
+                    values.put(totalKey, measurement.path("value").asDouble());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable metric " + name + ": " + body, e);
+        }
+    }
+
+    AppMetrics minus(AppMetrics baseline) {
+        AppMetrics delta = new AppMetrics();
+        values.forEach((key, value) -> delta.values.put(key, value - baseline.values.getOrDefault(key, 0.0)));
+        return delta;
+    }
+
+    long get(String key) {
+        return Math.round(values.getOrDefault(key, 0.0));
+    }
+
+    /**
+     * @return attempts beyond the first, that is transaction restarts after transient errors
+     */
+    long getRetries() {
+        return get("attempts") - get("calls");
+    }
+}
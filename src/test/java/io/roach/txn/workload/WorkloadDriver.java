@@ -0,0 +1,353 @@
+package io.roach.txn.workload;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Drives a configurable read/write workload against the bank at {@code localhost:8080},
+ * backed by a local PostgreSQL, and reports client side latency percentiles along with
+ * the throughput, retries and outcomes scraped from the app's metrics.
+ * <p>
+ * In open loop mode requests are issued at a fixed rate and latency is measured from each
+ * request's intended start time, so that queueing behind slow requests is not hidden
+ * (coordinated omission). At most {@code max-in-flight} requests are outstanding, a request
+ * due while at the limit is not sent and counted as dropped, as is any request still in flight
+ * a minute after the run ends. In closed loop mode workers issue requests back to back, and if
+ * paced by a rate, latencies are corrected with the HdrHistogram expected interval.
+ * <p>
+ * Accounts {@code user-0 .. user-N} are seeded directly in the database. With the Zipfian
+ * distribution {@code user-0} is the hottest account.
+ * <p>
+ * See {@link WorkloadSettings} for the {@code workload.*} system properties.
+ */
+public class WorkloadDriver {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private static final long ACCOUNT_ID_OFFSET = 1_000_000;
+
+    private final WorkloadSettings settings = new WorkloadSettings();
+
+    private final Map<String, OperationStats> stats = new HashMap<>();
+
+    // Open loop requests not sent or not completed, because max in flight was reached
+    private final LongAdder dropped = new LongAdder();
+
+    private RestTemplate restTemplate;
+
+    private ZipfianGenerator zipfianGenerator;
+
+    private volatile boolean recording;
+
+    private volatile AppMetrics baseline;
+
+    @Test
+    public void runWorkload() throws Exception {
+        System.setProperty("http.maxConnections",
+                String.valueOf(Math.max(settings.workers, settings.maxInFlight)));
+        restTemplate = new RestTemplate();
+
+        stats.put("read", new OperationStats());
+        stats.put("transfer", new OperationStats());
+
+        if (settings.distribution == WorkloadSettings.Distribution.ZIPFIAN) {
+            zipfianGenerator = new ZipfianGenerator(settings.accounts, settings.zipfTheta);
+        }
+
+        System.out.println("Workload: " + settings);
+        seedAccounts();
+
+        long startNanos = System.nanoTime();
+        long measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(settings.warmupSeconds);
+        long endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(settings.durationSeconds);
+
+        // Off the request path, so that scraping does not delay open loop dispatch
+        Thread phases = new Thread(() -> {
+            parkUntil(measureStartNanos);
+            stats.values().forEach(OperationStats::reset);
+            dropped.reset();
+            baseline = AppMetrics.scrape(restTemplate, settings.baseUrl);
+            recording = true;
+        }, "workload-phases");
+        phases.start();
+
+        if (settings.mode == WorkloadSettings.Mode.OPEN) {
+            runOpenLoop(startNanos, endNanos);
+        } else {
+            runClosedLoop(startNanos, endNanos);
+        }
+        phases.join();
+
+        AppMetrics delta = AppMetrics.scrape(restTemplate, settings.baseUrl).minus(baseline);
+        report(delta);
+    }
+
+    private void runOpenLoop(long startNanos, long endNanos) throws InterruptedException {
+        if (settings.rate <= 0) {
+            throw new IllegalArgumentException("Open loop mode requires workload.rate");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(settings.maxInFlight);
+        Semaphore inFlight = new Semaphore(settings.maxInFlight);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / settings.rate);
+
+        for (long i = 0; ; i++) {
+            long intendedNanos = startNanos + i * intervalNanos;
+            if (intendedNanos >= endNanos) {
+                break;
+            }
+            parkUntil(intendedNanos);
+            // No queueing beyond max in flight, the executor always has an idle thread for a permit
+            if (!inFlight.tryAcquire()) {
+                if (recording) {
+                    dropped.increment();
+                }
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    execute(intendedNanos, 0);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(HIGHEST_TRACKABLE_MICROS, TimeUnit.MICROSECONDS)) {
+            // Stop recording first, so that late completions are not counted as well
+            recording = false;
+            dropped.add(settings.maxInFlight - inFlight.availablePermits());
+            executor.shutdownNow();
+        }
+    }
+
+    private void runClosedLoop(long startNanos, long endNanos) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(settings.workers);
+        long workerIntervalNanos = settings.rate > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1) * settings.workers / settings.rate) : 0;
+
+        for (int w = 0; w < settings.workers; w++) {
+            executor.execute(() -> {
+                for (long i = 0; ; i++) {
+                    long intendedNanos = workerIntervalNanos > 0 ? startNanos + i * workerIntervalNanos : 0;
+                    if (Math.max(intendedNanos, System.nanoTime()) >= endNanos) {
+                        break;
+                    }
+                    parkUntil(intendedNanos);
+                    execute(System.nanoTime(), workerIntervalNanos);
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(settings.warmupSeconds + settings.durationSeconds + 60, TimeUnit.SECONDS);
+    }
+
+    private static void parkUntil(long deadlineNanos) {
+        long now;
+        while ((now = System.nanoTime()) < deadlineNanos) {
+            LockSupport.parkNanos(deadlineNanos - now);
+        }
+    }
+
+    private void execute(long intendedNanos, long expectedIntervalNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int account = zipfianGenerator != null ? zipfianGenerator.next() : random.nextInt(settings.accounts);
+        String name = "user-" + account;
+        boolean read = random.nextDouble() < settings.readRatio;
+        OperationStats operationStats = stats.get(read ? "read" : "transfer");
+
+        long sendNanos = System.nanoTime();
+        HttpStatus status;
+        try {
+            if (read) {
+                restTemplate.getForObject(settings.baseUrl + "/account/{name}/balance", String.class, name);
+            } else {
+                Map<String, Object> request = new HashMap<>();
+                request.put("name", name);
+                request.put("accountType", random.nextBoolean() ? "asset" : "expense");
+                // Zero drift on average, balances stay around the seeded amount
+                request.put("amount", BigDecimal.valueOf(random.nextInt(-1000, 1001), 2));
+                restTemplate.postForEntity(settings.baseUrl + settings.transferPath
+                        + (settings.transferMode.isEmpty() ? "" : "?mode=" + settings.transferMode),
+                        request, Void.class);
+            }
+            status = HttpStatus.OK;
+        } catch (HttpStatusCodeException e) {
+            status = e.getStatusCode();
+        } catch (RuntimeException e) {
+            status = null;
+        }
+        long endNanos = System.nanoTime();
+
+        if (!recording) {
+            return;
+        }
+        operationStats.record(status,
+                TimeUnit.NANOSECONDS.toMicros(endNanos - intendedNanos),
+                TimeUnit.NANOSECONDS.toMicros(endNanos - sendNanos),
+                TimeUnit.NANOSECONDS.toMicros(expectedIntervalNanos));
+    }
+
+    private void seedAccounts() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(
+                settings.jdbcUrl, settings.jdbcUser, settings.jdbcPassword);
+             PreparedStatement ps = connection.prepareStatement(
+                     "INSERT INTO account (id, balance, name, type) "
+                             + "SELECT ? + n * 2 + t.i, 500.00, 'user-' || n, t.type "
+                             + "FROM generate_series(0, ? - 1) AS n, "
+                             + "(VALUES (0, 'asset'), (1, 'expense')) AS t(i, type) "
+                             + "ON CONFLICT (name, type) DO UPDATE SET balance = 500.00")) {
+            ps.setLong(1, ACCOUNT_ID_OFFSET);
+            ps.setInt(2, settings.accounts);
+            ps.executeUpdate();
+            // Only exists with the 'ledger' profile
+            if (tableExists(connection, "account_ledger")) {
+                try (PreparedStatement clearLedger = connection.prepareStatement(
+                        "DELETE FROM account_ledger WHERE name LIKE 'user-%'")) {
+                    clearLedger.executeUpdate();
+                }
+            }
+            // Only exists with the 'sharding' profile
+            if (settings.transferPath.endsWith("/sharded")) {
+                try (PreparedStatement clearShards = connection.prepareStatement(
+                        "DELETE FROM account_shard WHERE name LIKE 'user-%'")) {
+                    clearShards.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(null, null, table, new String[] {"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    private void report(AppMetrics delta) throws IOException {
+        System.out.println();
+        System.out.printf("%-9s %9s %9s %7s %7s %7s %9s %9s %9s %9s %9s%n",
+                "op", "ok", "ops/s", "417", "503", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        List<String> names = new ArrayList<>(stats.keySet());
+        names.sort(String::compareTo);
+        for (String name : names) {
+            OperationStats s = stats.get(name);
+            printRow(name, s, s.latency);
+            printRow(name + "*", s, s.serviceTime);
+            writeHistogram(name, s.latency);
+        }
+        System.out.println("* service time, excluding time queued behind earlier requests (not corrected)");
+        if (settings.mode == WorkloadSettings.Mode.OPEN) {
+            System.out.printf("dropped: %d (max in flight reached, or not completed in time)%n", dropped.sum());
+        }
+        System.out.println();
+
+        double seconds = settings.durationSeconds;
+        System.out.printf("app: %.1f tx/s, %d calls, %d retries (%.2f per call), %d exhausted, "
+                        + "%d non-transient failures, %d savepoint rollbacks%n",
+                delta.get("calls") / seconds, delta.get("calls"), delta.getRetries(),
+                delta.get("calls") > 0 ? (double) delta.getRetries() / delta.get("calls") : 0,
+                delta.get("calls.exhausted"), delta.get("calls.non_transient_failure"),
+                delta.get("savepoint.rollbacks"));
+    }
+
+    private void printRow(String name, OperationStats s, Histogram histogram) {
+        System.out.printf("%-9s %9d %9.1f %7d %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name, s.ok.sum(), s.ok.sum() / (double) settings.durationSeconds,
+                s.rejected.sum(), s.shed.sum(), s.errors.sum(),
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private void writeHistogram(String name, Histogram histogram) throws IOException {
+        if (settings.histogramDir.isEmpty()) {
+            return;
+        }
+        File dir = new File(settings.histogramDir);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        File file = new File(dir, name + ".hgrm");
+        try (PrintStream out = new PrintStream(new FileOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, 1000.0); // In milliseconds
+        }
+        System.out.println("Wrote " + file);
+    }
+
+    private static class OperationStats {
+        // Latency from intended start, corrected for coordinated omission
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+        final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+        final LongAdder ok = new LongAdder();
+
+        // Insufficient funds
+        final LongAdder rejected = new LongAdder();
+
+        // Retry budget exhausted
+        final LongAdder shed = new LongAdder();
+
+        final LongAdder errors = new LongAdder();
+
+        void record(HttpStatus status, long latencyMicros, long serviceTimeMicros, long expectedIntervalMicros) {
+            if (status == null) {
+                errors.increment();
+                return;
+            }
+            if (status.is2xxSuccessful()) {
+                ok.increment();
+            } else if (status == HttpStatus.EXPECTATION_FAILED) {
+                rejected.increment();
+            } else if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+                shed.increment();
+            } else {
+                errors.increment();
+            }
+            long value = Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS);
+            if (expectedIntervalMicros > 0) {
+                latency.recordValueWithExpectedInterval(value, expectedIntervalMicros);
+            } else {
+                latency.recordValue(value);
+            }
+            serviceTime.recordValue(Math.min(serviceTimeMicros, HIGHEST_TRACKABLE_MICROS));
+        }
+
+        void reset() {
+            latency.reset();
+            serviceTime.reset();
+            ok.reset();
+            rejected.reset();
+            shed.reset();
+            errors.reset();
+        }
+    }
+}
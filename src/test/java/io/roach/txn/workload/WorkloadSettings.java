@@ -0,0 +1,81 @@
+package io.roach.txn.workload;
+
+import java.util.Locale;
+
+/**
+ * Workload driver settings, read from {@code workload.*} system properties, for example
+ * {@code -Dworkload.mode=open -Dworkload.rate=500 -Dworkload.distribution=zipfian}.
+ */
+class WorkloadSettings {
+    enum Mode {
+        // Requests are issued at a fixed rate regardless of completions
+        OPEN,
+        // A fixed number of workers issue requests back to back
+        CLOSED
+    }
+
+    enum Distribution {
+        UNIFORM,
+        ZIPFIAN
+    }
+
+    final String baseUrl = property("base-url", "http://localhost:8080");
+
+    final String jdbcUrl = property("jdbc-url", "jdbc:postgresql://localhost:5432/roach_txn");
+
+    final String jdbcUser = property("jdbc-user", "postgres");
+
+    final String jdbcPassword = property("jdbc-password", "");
+
+    final Mode mode = Mode.valueOf(property("mode", "closed").toUpperCase(Locale.ROOT));
+
+    // Requests per second, required in open loop mode and paces each worker in closed loop mode
+    final double rate = Double.parseDouble(property("rate", "0"));
+
+    final int workers = Integer.parseInt(property("workers", "16"));
+
+    // Upper bound for concurrent requests in open loop mode, requests due while at the bound are dropped
+    final int maxInFlight = Integer.parseInt(property("max-in-flight", "256"));
+
+    final int accounts = Integer.parseInt(property("accounts", "1000"));
+
+    final Distribution distribution =
+            Distribution.valueOf(property("distribution", "zipfian").toUpperCase(Locale.ROOT));
+
+    final double zipfTheta = Double.parseDouble(property("zipf-theta", "0.99"));
+
+    // Fraction of balance reads, the rest are transfers
+    final double readRatio = Double.parseDouble(property("read-ratio", "0.5"));
+
+    final int warmupSeconds = Integer.parseInt(property("warmup-seconds", "5"));
+
+    final int durationSeconds = Integer.parseInt(property("duration-seconds", "30"));
+
+    // Transfer endpoint, for example /account/transfer/sharded
+    final String transferPath = property("transfer-path", "/account/transfer");
+
+    // Transfer mode query parameter passed to the app, empty for the app default
+    final String transferMode = property("transfer-mode", "");
+
+    // Directory for .hgrm percentile distributions, empty to skip
+    final String histogramDir = property("histogram-dir", "target/workload");
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("workload." + name, defaultValue);
+    }
+
+    @Override
+    public String toString() {
+        return "mode=" + mode
+                + (rate > 0 ? " rate=" + rate + "/s" : "")
+                + (mode == Mode.CLOSED ? " workers=" + workers : " max-in-flight=" + maxInFlight)
+                + " accounts=" + accounts
+                + " distribution=" + distribution
+                + (distribution == Distribution.ZIPFIAN ? " theta=" + zipfTheta : "")
+                + " read-ratio=" + readRatio
+                + " warmup=" + warmupSeconds + "s"
+                + " duration=" + durationSeconds + "s"
+                + " transfer-path=" + transferPath
+                + (transferMode.isEmpty() ? "" : " transfer-mode=" + transferMode);
+    }
+}
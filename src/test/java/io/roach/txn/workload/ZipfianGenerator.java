@@ -0,0 +1,63 @@
+package io.roach.txn.workload;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates integers in {@code [0, n)} where item {@code i} is drawn with probability
+ * proportional to {@code 1 / (i + 1)^theta}, so lower items are hotter.
+ * <p>
+ * Uses the rejection-free method from Gray et al, "Quickly Generating Billion-Record
+ * Synthetic Databases", which needs O(n) setup for the zeta constant and O(1) per draw.
+ */
+class ZipfianGenerator {
+    private final int items;
+
+    private final double theta;
+
+    private final double zetaN;
+
+    private final double alpha;
+
+    private final double eta;
+
+    private final double halfPowTheta;
+
+    ZipfianGenerator(int items, double theta) {
+        if (items < 1) {
+            throw new IllegalArgumentException("items must be positive: " + items);
+        }
+        if (theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("theta must be in (0, 1): " + theta);
+        }
+        this.items = items;
+        this.theta = theta;
+        this.zetaN = zeta(items, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        this.halfPowTheta = 1 + Math.pow(0.5, theta);
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    int next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < halfPowTheta) {
+            return Math.min(1, items - 1);
+        }
+        return (int) Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    double getTheta() {
+        return theta;
+    }
+}
@@ -0,0 +1,39 @@
+package io.roach.txn.workload;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZipfianGeneratorTest {
+    @Test
+    public void whenDrawing_thenWithinRangeAndSkewedTowardsLowItems() {
+        int items = 1000;
+        ZipfianGenerator generator = new ZipfianGenerator(items, 0.99);
+
+        int draws = 200_000;
+        int[] counts = new int[items];
+        for (int i = 0; i < draws; i++) {
+            int item = generator.next();
+            Assert.assertTrue("Out of range: " + item, item >= 0 && item < items);
+            counts[item]++;
+        }
+
+        // With theta 0.99 over 1000 items, the hottest item gets about 13% of the draws
+        Assert.assertTrue("Hottest item: " + counts[0], counts[0] > draws * 0.10 && counts[0] < draws * 0.16);
+        Assert.assertTrue(counts[0] > counts[1]);
+        Assert.assertTrue(counts[1] > counts[9]);
+
+        int top10 = 0;
+        for (int i = 0; i < 10; i++) {
+            top10 += counts[i];
+        }
+        Assert.assertTrue("Top 1% of items: " + top10, top10 > draws * 0.35);
+    }
+
+    @Test
+    public void whenSingleItem_thenAlwaysZero() {
+        ZipfianGenerator generator = new ZipfianGenerator(1, 0.5);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(0, generator.next());
+        }
+    }
+}